@@ -0,0 +1,91 @@
+package org.parser.fonbetparser.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of fonbet live line from application.properties
+ */
+@Data
+@ConfigurationProperties(prefix = "fonbet.live")
+public class FonbetLiveProperties {
+    /** Address of currentLine JSON */
+    private String url;
+    /** Same currentLine on other fonbet hosts, asked when url is slow or failing */
+    private List<String> mirrorUrls = new ArrayList<>();
+    /** Extra attempts of a failed download, every attempt may go to all hosts */
+    private int retries = 2;
+    /** Base delay before a retry, doubled on every attempt, actual delay is random up to it */
+    private Duration retryBackoff = Duration.ofMillis(200);
+    /** Time after which the same request is also sent to the next mirror, 0 to only use mirrors on failure */
+    private Duration hedgeDelay = Duration.ofMillis(1500);
+    /** Consecutive failures of a host after which it isn't asked for circuit-open-time */
+    private int circuitFailureThreshold = 5;
+    /** Time a failing host is skipped, then one trial request decides if it is used again */
+    private Duration circuitOpenTime = Duration.ofSeconds(30);
+    /** Age of snapshot after which served lines are marked as stale */
+    private Duration staleAfter = Duration.ofSeconds(10);
+    /** Interval between downloads of currentLine, ms */
+    private long pollInterval = 2000;
+    /** Address of prematch currentLine JSON, prematch line isn't loaded if not set */
+    private String prematchUrl;
+    /** Interval between downloads of prematch line */
+    private Duration prematchPollInterval = Duration.ofMinutes(1);
+    /** Rebuild only events changed since previous snapshot */
+    private boolean incremental = true;
+    /** Threads building events of one parse, 1 to build them in the calling thread, 0 for all cores */
+    private int parallelism = 1;
+    /** Events per task when events are built in parallel, smaller lines are built in the calling thread */
+    private int parallelChunkSize = 2048;
+    /** Memory for responses of all sports, plain and gzipped */
+    private DataSize responseCacheSize = DataSize.ofMegabytes(64);
+    /** How long changes of coefficients are kept */
+    private Duration historyRetention = Duration.ofHours(24);
+    /** Memory for changes of coefficients, the oldest changes are dropped when it is full, 0 to disable */
+    private DataSize historySize = DataSize.ofMegabytes(32);
+    /** Alert when 1 / value of complementary outcomes of an event sum to less than this, 0 to disable */
+    private float alertProbabilitySum = 1.0f;
+    /** Alert when a coefficient changes by this fraction of its value between two snapshots, 0 to disable */
+    private float alertMoveThreshold = 0.25f;
+    /** Number of the latest alerts kept for /coefficient-alerts */
+    private int alertRecentSize = 1000;
+    /** How long names and teams not seen in any line are kept in LineDictionary */
+    private Duration dictionaryExpireAfter = Duration.ofMinutes(10);
+    /** Directory of log of downloaded lines, empty to not record them */
+    private String recordDir;
+    /** Size of one file of log of downloaded lines */
+    private DataSize recordSegmentSize = DataSize.ofMegabytes(256);
+    /** Directory of recorded log, if set lines are replayed from it instead of downloading them */
+    private String replayDir;
+    /** Download time of the first replayed line, the whole log is replayed if not set */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime replayFrom;
+    /** Timeout of TCP/TLS connect to fonbet, ms */
+    private int connectTimeout = 2000;
+    /** Timeout between two packets of response, ms */
+    private int readTimeout = 5000;
+    /** Size of connection pool */
+    private int maxConnections = 4;
+    /** How long an idle connection is kept open, if server didn't send Keep-Alive, ms */
+    private long keepAlive = 30000;
+    /**
+     * Rules splitting segment name into sportType, country and league: sport name -> regex with named
+     * groups sportType, countryName and league. A rule applies to segments whose name starts with its sport name,
+     * e.g. fonbet.live.segment-rules[Хоккей]=^(?<sportType>Хоккей)\\.\\s(?<league>.*)$
+     */
+    private Map<String, String> segmentRules = new LinkedHashMap<>(Collections.singletonMap("Футбол",
+            "^(?<sportType>(Футбол. До 20 лет)?|(Футбол. Жен)?|(Футбол)?).\\s" +
+                    "(?<countryName>(Товарищеские матчи)?(FIFA 21. eSport Battle)?" +
+                    "|(FIFA 21. Лига Про. [а-яА-ЯёЁ]+)?|(FIFA 21)?|(COSAFA Cup)?|(.+?)).\\s" +
+                    "(?<league>.*)$"));
+}
@@ -0,0 +1,62 @@
+package org.parser.fonbetparser.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client shared by all downloads from fonbet, so connections are kept alive between polls
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Pooled client with keep-alive and timeouts from application.properties.
+     * Responses in gzip and deflate are decoded by client
+     * @param properties fonbet.live settings
+     * @return client, closed with application context
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient fonbetHttpClient(FonbetLiveProperties properties) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConnections());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setConnectionRequestTimeout(properties.getConnectTimeout())
+                .setSocketTimeout(properties.getReadTimeout())
+                .build();
+
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : properties.getKeepAlive();
+        };
+
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getKeepAlive(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @param fonbetHttpClient pooled client
+     * @return RestTemplate on top of pooled client
+     */
+    @Bean
+    public RestTemplate fonbetRestTemplate(CloseableHttpClient fonbetHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(fonbetHttpClient));
+    }
+}
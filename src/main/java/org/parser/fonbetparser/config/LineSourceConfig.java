@@ -0,0 +1,68 @@
+package org.parser.fonbetparser.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.service.*;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Sources of lines polled by LineIngestion
+ */
+@Configuration
+public class LineSourceConfig {
+
+    /**
+     * Fonbet live line, read from the snapshot of LineSnapshotPoller scheduled by Spring
+     * @param parserService parser of live line
+     * @param snapshotPoller poller of live line
+     * @param properties fonbet.live settings
+     * @return source of live line
+     */
+    @Bean
+    public FonbetLineSource fonbetLiveSource(FonbetLiveParserService parserService, LineSnapshotPoller snapshotPoller,
+                                             FonbetLiveProperties properties) {
+        return new FonbetLineSource("fonbet-live", LineType.LIVE, Duration.ofMillis(properties.getPollInterval()),
+                parserService, snapshotPoller, false, properties.getStaleAfter());
+    }
+
+    /**
+     * Fonbet prematch line: same JSON as live line at fonbet.live.prematch-url, with its own fetcher,
+     * snapshot and parse cache. It is neither hedged to mirrors nor recorded
+     * @param fonbetRestTemplate pooled client
+     * @param properties fonbet.live settings
+     * @param classifier rules of segment names
+     * @param parserPool pool of parallel builds
+     * @param registry registry of metrics, prematch downloads share timers with live ones
+     * @param dictionary canonical names and teams, shared with live line
+     * @return source of prematch line
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "fonbet.live", name = "prematch-url")
+    public FonbetLineSource fonbetPrematchSource(RestTemplate fonbetRestTemplate, FonbetLiveProperties properties,
+                                                 SportNameClassifier classifier, ForkJoinPool parserPool,
+                                                 MeterRegistry registry, LineDictionary dictionary) {
+        FonbetLiveProperties prematch = new FonbetLiveProperties();
+        BeanUtils.copyProperties(properties, prematch);
+        prematch.setUrl(properties.getPrematchUrl());
+        prematch.setMirrorUrls(Collections.emptyList());
+        prematch.setRecordDir(null);
+        prematch.setStaleAfter(properties.getPrematchPollInterval().multipliedBy(3));
+
+        ParserMetrics metrics = new ParserMetrics(registry);
+        LineSnapshotPoller poller = new LineSnapshotPoller(
+                new CurrentLineFetcher(fonbetRestTemplate, prematch, metrics, new LineLogRecorder(prematch),
+                        dictionary));
+        FonbetLiveParserServiceImpl parserService = new FonbetLiveParserServiceImpl(poller, prematch, classifier,
+                parserPool, metrics, LineType.PREMATCH, dictionary);
+        return new FonbetLineSource("fonbet-prematch", LineType.PREMATCH, properties.getPrematchPollInterval(),
+                parserService, poller, true, prematch.getStaleAfter());
+    }
+}
@@ -0,0 +1,26 @@
+package org.parser.fonbetparser.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Threads for parsing of currentLine
+ */
+@Configuration
+public class ParserConfig {
+
+    /**
+     * Pool building events of large lines in chunks, sized by fonbet.live.parallelism
+     * @param properties fonbet.live settings
+     * @return pool, shut down with application context
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool parserPool(FonbetLiveProperties properties) {
+        int parallelism = properties.getParallelism() > 0
+                ? properties.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism);
+    }
+}
@@ -0,0 +1,39 @@
+package org.parser.fonbetparser.config;
+
+import org.parser.fonbetparser.line.LineLogReader;
+import org.parser.fonbetparser.service.LineFetcher;
+import org.parser.fonbetparser.service.ParserMetrics;
+import org.parser.fonbetparser.service.ReplayLineFetcher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+
+/**
+ * Offline mode: lines are read from a recorded log instead of fonbet when fonbet.live.replay-dir is set
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "fonbet.live", name = "replay-dir")
+public class ReplayConfig {
+
+    /**
+     * Fetcher used by LineSnapshotPoller instead of the downloading one
+     * @param properties fonbet.live settings
+     * @param metrics metrics of parse
+     * @return fetcher replaying fonbet.live.replay-dir from fonbet.live.replay-from
+     * @throws IOException if log can't be opened
+     */
+    @Bean
+    @Primary
+    public LineFetcher replayLineFetcher(FonbetLiveProperties properties, ParserMetrics metrics)
+            throws IOException {
+        long from = properties.getReplayFrom() == null
+                ? 0
+                : properties.getReplayFrom().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new ReplayLineFetcher(LineLogReader.open(Paths.get(properties.getReplayDir())), from, metrics);
+    }
+}
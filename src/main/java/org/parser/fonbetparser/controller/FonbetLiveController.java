@@ -2,14 +2,41 @@ package org.parser.fonbetparser.controller;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.domain.CoefficientAlert;
+import org.parser.fonbetparser.domain.CoefficientChange;
+import org.parser.fonbetparser.domain.CoefficientMove;
+import org.parser.fonbetparser.domain.LineSourceStatus;
 import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEventPage;
+import org.parser.fonbetparser.domain.SportEventQuery;
+import org.parser.fonbetparser.line.LineDelta;
+import org.parser.fonbetparser.service.CoefficientAlertEngine;
+import org.parser.fonbetparser.service.CoefficientHistory;
 import org.parser.fonbetparser.service.FonbetLiveParserService;
+import org.parser.fonbetparser.service.LineEventStore;
+import org.parser.fonbetparser.service.LiveLineBinaryCodec;
+import org.parser.fonbetparser.service.LiveLineResponseCache;
+import org.parser.fonbetparser.service.LiveSportEventsPublisher;
+import org.parser.fonbetparser.service.SportEventIndex;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 
 @Controller
@@ -17,16 +44,216 @@ import org.springframework.web.bind.annotation.ResponseBody;
 @Slf4j
 public class FonbetLiveController {
 
+    static final String SNAPSHOT_VERSION_HEADER = "X-Snapshot-Version";
+    /** Value of sportNames for all sports of the line */
+    static final String ALL_SPORTS = "all";
+    private static final String GZIP = "gzip";
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
     private final FonbetLiveParserService parserService;
+    private final LiveSportEventsPublisher eventsPublisher;
+    private final LiveLineResponseCache responseCache;
+    private final CoefficientHistory coefficientHistory;
+    private final LineEventStore lineEventStore;
+    private final CoefficientAlertEngine alertEngine;
+    private final SportEventIndex sportEventIndex;
 
     @GetMapping(value = "/")
     public String getMainPage() {
         return "index";
     }
 
+    /**
+     * Events of one sport. Servlet thread is released while the line is parsed. Body is serialized and gzipped
+     * once per snapshot version and format, client having the same version gets 304 Not Modified.
+     * JSON by default, LiveLineBinaryCodec for Accept: application/x-fonbet-line
+     */
     @GetMapping("/live-sport-events")
     @ResponseBody
-    public ResponseEntity<LiveLine> getSportEvents(@RequestParam(name = "sportName") String sportName) {
-        return new ResponseEntity<>(parserService.getTargetSportEvents(sportName), HttpStatus.OK);
+    public Mono<ResponseEntity<byte[]>> getSportEvents(
+            @RequestParam(name = "sportName") String sportName,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains(GZIP);
+        LiveLineResponseCache.Format format = acceptsBinary(accept)
+                ? LiveLineResponseCache.Format.BINARY
+                : LiveLineResponseCache.Format.JSON;
+
+        return parserService.getTargetSportEventsAsync(sportName).map(liveLine -> {
+            LiveLineResponseCache.SerializedLiveLine body = responseCache.get(sportName, liveLine, format);
+            HttpHeaders headers = snapshotHeaders(liveLine);
+            headers.setETag(body.getETag(gzip));
+            headers.setVary(Arrays.asList(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+
+            if (body.matches(ifNoneMatch))
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+
+            headers.setContentType(format == LiveLineResponseCache.Format.BINARY
+                    ? LiveLineBinaryCodec.MEDIA_TYPE
+                    : MediaType.APPLICATION_JSON);
+            if (!gzip)
+                return new ResponseEntity<>(body.getBody(), headers, HttpStatus.OK);
+
+            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+            return new ResponseEntity<>(body.getGzipBody(), headers, HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Events of several sports built from one snapshot in one pass, e.g. ?sportNames=Футбол,Хоккей,Теннис
+     * or ?sportNames=all
+     */
+    @GetMapping("/live-sport-events/multi")
+    @ResponseBody
+    public ResponseEntity<Map<String, LiveLine>> getSportEventsOfSports(
+            @RequestParam(name = "sportNames") List<String> sportNames) {
+        Map<String, LiveLine> liveLines = parserService.getTargetSportEvents(
+                sportNames.contains(ALL_SPORTS) ? null : sportNames);
+        HttpHeaders headers = liveLines.isEmpty()
+                ? new HttpHeaders()
+                : snapshotHeaders(liveLines.values().iterator().next());
+        return new ResponseEntity<>(liveLines, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Page of events of all sports found by indexes of the latest snapshot, e.g.
+     * ?league=Англия. Премьер-лига&fields=eventId,name,coefficient&sort=-name&limit=20,
+     * next page is asked with cursor=nextCursor of the previous one
+     */
+    @GetMapping("/live-sport-events/query")
+    @ResponseBody
+    public ResponseEntity<SportEventPage> querySportEvents(
+            @RequestParam(name = "sportType", required = false) String sportType,
+            @RequestParam(name = "countryName", required = false) String countryName,
+            @RequestParam(name = "league", required = false) String league,
+            @RequestParam(name = "team", required = false) String team,
+            @RequestParam(name = "eventId", required = false) List<Integer> eventIds,
+            @RequestParam(name = "fields", required = false) List<String> fields,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        SportEventQuery query = SportEventQuery.builder()
+                .sportType(sportType)
+                .countryName(countryName)
+                .league(league)
+                .team(team)
+                .eventIds(eventIds)
+                .fields(fields)
+                .sort(sort)
+                .cursor(cursor)
+                .limit(limit)
+                .build();
+        try {
+            return new ResponseEntity<>(sportEventIndex.query(query), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping(value = "/live-sport-events/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public Flux<ServerSentEvent<String>> streamSportEvents(@RequestParam(name = "sportName") String sportName) {
+        return eventsPublisher.subscribe(sportName);
+    }
+
+    @GetMapping("/live-line-changes")
+    @ResponseBody
+    public ResponseEntity<LineDelta> getLineChanges() {
+        return new ResponseEntity<>(parserService.getLineChanges(), HttpStatus.OK);
+    }
+
+    /**
+     * Changes of coefficients of event within fonbet.live.history-retention, oldest first
+     */
+    @GetMapping("/coefficient-history")
+    @ResponseBody
+    public ResponseEntity<List<CoefficientChange>> getCoefficientHistory(@RequestParam(name = "eventId") int eventId) {
+        return new ResponseEntity<>(coefficientHistory.getHistory(eventId), HttpStatus.OK);
+    }
+
+    /**
+     * Coefficients with the largest relative change in the last seconds, e.g. ?seconds=300&limit=20
+     */
+    @GetMapping("/coefficient-movers")
+    @ResponseBody
+    public ResponseEntity<List<CoefficientMove>> getCoefficientMovers(
+            @RequestParam(name = "seconds", defaultValue = "60") long seconds,
+            @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return new ResponseEntity<>(coefficientHistory.getBiggestMovers(Duration.ofSeconds(seconds), limit),
+                HttpStatus.OK);
+    }
+
+    /**
+     * The latest alerts of CoefficientAlertEngine, newest first, e.g. ?limit=50
+     */
+    @GetMapping("/coefficient-alerts")
+    @ResponseBody
+    public ResponseEntity<List<CoefficientAlert>> getCoefficientAlerts(
+            @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        return new ResponseEntity<>(alertEngine.getRecent(limit), HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/coefficient-alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public Flux<CoefficientAlert> streamCoefficientAlerts() {
+        return alertEngine.alerts();
+    }
+
+    /**
+     * Events of sport from every bookmaker and line type, as of the latest poll of their sources
+     */
+    @GetMapping("/sport-events")
+    @ResponseBody
+    public ResponseEntity<List<LiveLine>> getSportEventsOfAllSources(
+            @RequestParam(name = "sportName") String sportName) {
+        return new ResponseEntity<>(lineEventStore.getSportEvents(sportName), HttpStatus.OK);
+    }
+
+    /**
+     * Health of line sources: polls, failures and size of their latest lines
+     */
+    @GetMapping("/line-sources")
+    @ResponseBody
+    public ResponseEntity<List<LineSourceStatus>> getLineSources() {
+        return new ResponseEntity<>(lineEventStore.getStatuses(), HttpStatus.OK);
+    }
+
+    /**
+     * @param accept value of Accept header, may be null
+     * @return true if client asked for LiveLineBinaryCodec explicitly, wildcards get JSON
+     */
+    private static boolean acceptsBinary(String accept) {
+        if (accept == null)
+            return false;
+
+        try {
+            for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+                if (mediaType.equalsTypeAndSubtype(LiveLineBinaryCodec.MEDIA_TYPE))
+                    return mediaType.getQualityValue() > 0;
+            }
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * Age of snapshot in seconds and its version, Warning 110 if it is stale. Age is counted from the latest
+     * download, which a 304 from fonbet renews, while a cached body keeps times of the first download of its version
+     * @param liveLine result built from snapshot
+     * @return headers, empty if snapshot wasn't downloaded
+     */
+    private HttpHeaders snapshotHeaders(LiveLine liveLine) {
+        HttpHeaders headers = new HttpHeaders();
+        if (liveLine.isStale())
+            headers.set(HttpHeaders.WARNING, STALE_WARNING);
+
+        if (liveLine.getEndTime() != null) {
+            headers.set(HttpHeaders.AGE,
+                    Long.toString(Duration.between(liveLine.getEndTime(), LocalDateTime.now()).getSeconds()));
+            headers.set(SNAPSHOT_VERSION_HEADER, Long.toString(liveLine.getSnapshotVersion()));
+        }
+        return headers;
     }
 }
@@ -3,6 +3,8 @@ package org.parser.fonbetparser.domain;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 @Builder
 public class Child {
@@ -10,4 +12,5 @@ public class Child {
     private Integer id;
     private Integer parentId;
     private Coefficients coefficients;
+    private List<Child> children;
 }
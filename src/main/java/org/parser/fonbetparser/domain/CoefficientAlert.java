@@ -0,0 +1,31 @@
+package org.parser.fonbetparser.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class CoefficientAlert {
+
+    public enum Type {
+        /** Sum of 1 / value of complementary outcomes is below fonbet.live.alert-probability-sum */
+        IMPLIED_PROBABILITY,
+        /** Value changed by at least fonbet.live.alert-move-threshold between two snapshots */
+        MOVE
+    }
+
+    private Type type;
+    private Integer eventId;
+    /** Complementary outcomes for IMPLIED_PROBABILITY, the moved factor for MOVE */
+    private List<Factor> factors;
+    /** Values of factors, for MOVE the previous and the new value */
+    private List<Float> values;
+    /** Implied probability sum for IMPLIED_PROBABILITY, relative change (to - from) / from for MOVE */
+    private float score;
+    private long snapshotVersion;
+    /** End of download of the snapshot */
+    private LocalDateTime time;
+}
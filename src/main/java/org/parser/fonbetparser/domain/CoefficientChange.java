@@ -0,0 +1,18 @@
+package org.parser.fonbetparser.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class CoefficientChange {
+    private Integer eventId;
+    private Factor factor;
+    /** End of download of the snapshot where the value was seen first */
+    private LocalDateTime time;
+    private float value;
+    /** Value before the change, null when the factor appeared */
+    private Float previousValue;
+}
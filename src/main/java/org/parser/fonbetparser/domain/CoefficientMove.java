@@ -0,0 +1,20 @@
+package org.parser.fonbetparser.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class CoefficientMove {
+    private Integer eventId;
+    private Factor factor;
+    /** Value at the start of the window, or the first value if the factor appeared in the window */
+    private float from;
+    private float to;
+    /** Relative change, (to - from) / from */
+    private float change;
+    /** Time of the latest change */
+    private LocalDateTime time;
+}
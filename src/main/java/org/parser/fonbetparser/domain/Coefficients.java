@@ -1,18 +1,133 @@
 package org.parser.fonbetparser.domain;
 
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-@Data
-@Builder
-@NoArgsConstructor
+/**
+ * Values of factors of one event, one float per Factor. Serialized to JSON
+ * as four maps: coefficient, doubleChance, handicap and totals
+ */
 public class Coefficients {
-    private final Map<String, Float> coefficient = new HashMap<>();
-    private final Map<String, Float> doubleChance = new HashMap<>();
-    private final Map<String, Float> handicap = new HashMap<>();
-    private final Map<String, Float> totals = new HashMap<>();
+
+    private static final int SIZE = Factor.values().length;
+
+    /** Value by ordinal of Factor, NaN if event has no such factor */
+    private final float[] values = new float[SIZE];
+
+    public Coefficients() {
+        Arrays.fill(values, Float.NaN);
+    }
+
+    @JsonCreator
+    public static Coefficients fromMarkets(@JsonProperty("coefficient") Map<String, Float> coefficient,
+                                           @JsonProperty("doubleChance") Map<String, Float> doubleChance,
+                                           @JsonProperty("handicap") Map<String, Float> handicap,
+                                           @JsonProperty("totals") Map<String, Float> totals) {
+        Coefficients coefficients = new Coefficients();
+        coefficients.putAll(Market.COEFFICIENT, coefficient);
+        coefficients.putAll(Market.DOUBLE_CHANCE, doubleChance);
+        coefficients.putAll(Market.HANDICAP, handicap);
+        coefficients.putAll(Market.TOTALS, totals);
+        return coefficients;
+    }
+
+    /**
+     * Set value of factor
+     * @param factorId value of "f" from customFactors
+     * @param value value of "v" from customFactors
+     * @return false if factor isn't collected to Coefficients
+     */
+    public boolean set(int factorId, float value) {
+        Factor factor = Factor.byId(factorId);
+        if (factor == null)
+            return false;
+
+        values[factor.ordinal()] = value;
+        return true;
+    }
+
+    public void set(Factor factor, float value) {
+        values[factor.ordinal()] = value;
+    }
+
+    public boolean has(Factor factor) {
+        return !Float.isNaN(values[factor.ordinal()]);
+    }
+
+    /**
+     * @return value of factor or NaN if event has no such factor
+     */
+    public float get(Factor factor) {
+        return values[factor.ordinal()];
+    }
+
+    public Map<String, Float> getCoefficient() {
+        return market(Market.COEFFICIENT);
+    }
+
+    public Map<String, Float> getDoubleChance() {
+        return market(Market.DOUBLE_CHANCE);
+    }
+
+    public Map<String, Float> getHandicap() {
+        return market(Market.HANDICAP);
+    }
+
+    public Map<String, Float> getTotals() {
+        return market(Market.TOTALS);
+    }
+
+    /**
+     * Read-only view of one market, label -> value
+     */
+    private Map<String, Float> market(Market market) {
+        Map<String, Float> res = null;
+        for (int i = 0; i < SIZE; i++) {
+            Factor factor = Factor.byOrdinal(i);
+            if (factor.getMarket() == market && !Float.isNaN(values[i])) {
+                if (res == null)
+                    res = new LinkedHashMap<>(4);
+                res.put(factor.getLabel(), values[i]);
+            }
+        }
+        return res == null ? Collections.emptyMap() : Collections.unmodifiableMap(res);
+    }
+
+    private void putAll(Market market, Map<String, Float> labels) {
+        if (labels == null)
+            return;
+
+        for (Map.Entry<String, Float> entry : labels.entrySet()) {
+            Factor factor = Factor.byLabel(market, entry.getKey());
+            if (factor != null && entry.getValue() != null)
+                values[factor.ordinal()] = entry.getValue();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Coefficients))
+            return false;
+        return Arrays.equals(values, ((Coefficients) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "Coefficients(coefficient=" + getCoefficient()
+                + ", doubleChance=" + getDoubleChance()
+                + ", handicap=" + getHandicap()
+                + ", totals=" + getTotals() + ")";
+    }
 }
@@ -0,0 +1,78 @@
+package org.parser.fonbetparser.domain;
+
+/**
+ * Factors of customFactors collected to Coefficients
+ */
+public enum Factor {
+    WIN_1(921, Market.COEFFICIENT, "1"),
+    DRAW(922, Market.COEFFICIENT, "X"),
+    WIN_2(923, Market.COEFFICIENT, "2"),
+    WIN_1_OR_DRAW(924, Market.DOUBLE_CHANCE, "1X"),
+    WIN_1_OR_WIN_2(1571, Market.DOUBLE_CHANCE, "12"),
+    DRAW_OR_WIN_2(925, Market.DOUBLE_CHANCE, "X2"),
+    HANDICAP_1(927, Market.HANDICAP, "Фора 1"),
+    HANDICAP_2(928, Market.HANDICAP, "Фора 2"),
+    TOTAL_OVER(930, Market.TOTALS, "Тотал Б"),
+    TOTAL_UNDER(931, Market.TOTALS, "Тотал М");
+
+    private static final Factor[] VALUES = values();
+    private static final Factor[] BY_ID;
+
+    static {
+        int maxId = 0;
+        for (Factor factor : VALUES) {
+            maxId = Math.max(maxId, factor.id);
+        }
+        BY_ID = new Factor[maxId + 1];
+        for (Factor factor : VALUES) {
+            BY_ID[factor.id] = factor;
+        }
+    }
+
+    private final int id;
+    private final Market market;
+    private final String label;
+
+    Factor(int id, Market market, String label) {
+        this.id = id;
+        this.market = market;
+        this.label = label;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Market getMarket() {
+        return market;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Find factor by id from customFactors
+     * @param id value of "f"
+     * @return factor or null if it isn't collected
+     */
+    public static Factor byId(int id) {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
+
+    /**
+     * Find factor by market and label
+     * @return factor or null if there is no such factor
+     */
+    public static Factor byLabel(Market market, String label) {
+        for (Factor factor : VALUES) {
+            if (factor.market == market && factor.label.equals(label))
+                return factor;
+        }
+        return null;
+    }
+
+    static Factor byOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
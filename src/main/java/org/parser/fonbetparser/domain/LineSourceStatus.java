@@ -0,0 +1,26 @@
+package org.parser.fonbetparser.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Health of one line source
+ */
+@Data
+@Builder
+public class LineSourceStatus {
+    private String name;
+    private String bookmaker;
+    private LineType lineType;
+    private long polls;
+    private long failures;
+    /** Failures since the last successful poll */
+    private int consecutiveFailures;
+    private LocalDateTime lastSuccess;
+    /** Error of the last failed poll, null if the last poll succeeded */
+    private String lastError;
+    private int sports;
+    private int events;
+}
@@ -13,5 +13,8 @@ public class LiveLine {
     private LineType lineType;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
+    private long snapshotVersion;
+    /** Snapshot is older than fonbet.live.stale-after because fonbet is failing, or there is no snapshot */
+    private boolean stale;
     private Set<SportEvent> sportEvents;
 }
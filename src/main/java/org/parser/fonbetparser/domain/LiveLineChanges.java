@@ -0,0 +1,16 @@
+package org.parser.fonbetparser.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Collection;
+import java.util.Set;
+
+@Data
+@Builder
+public class LiveLineChanges {
+    private String sportName;
+    private long snapshotVersion;
+    private Collection<SportEvent> sportEvents;
+    private Set<Integer> removedEventIds;
+}
@@ -0,0 +1,8 @@
+package org.parser.fonbetparser.domain;
+
+public enum Market {
+    COEFFICIENT,
+    DOUBLE_CHANCE,
+    HANDICAP,
+    TOTALS
+}
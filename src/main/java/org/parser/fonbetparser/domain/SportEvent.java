@@ -3,6 +3,8 @@ package org.parser.fonbetparser.domain;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 @Builder
 public class SportEvent {
@@ -13,4 +15,5 @@ public class SportEvent {
     private String name;
     private SportTeam sportTeam;
     private Coefficients coefficients;
+    private List<Child> children;
 }
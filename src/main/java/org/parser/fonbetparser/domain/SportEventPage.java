@@ -0,0 +1,19 @@
+package org.parser.fonbetparser.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class SportEventPage {
+    private long snapshotVersion;
+    /** Events matching filters, on all pages */
+    private int total;
+    /** Projected events, field name -> value */
+    private List<Map<String, Object>> events;
+    /** Cursor of the next page, null on the last page */
+    private String nextCursor;
+}
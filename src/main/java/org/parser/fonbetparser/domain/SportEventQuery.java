@@ -0,0 +1,28 @@
+package org.parser.fonbetparser.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Filters, projection, order and page of a query over events of the latest snapshot.
+ * Filters which are null are not applied, string filters ignore case
+ */
+@Data
+@Builder
+public class SportEventQuery {
+    private String sportType;
+    private String countryName;
+    private String league;
+    /** First or second team */
+    private String team;
+    private List<Integer> eventIds;
+    /** Fields of SportEvent to return, markets of coefficients can be named alone, empty for all fields */
+    private List<String> fields;
+    /** Field to sort by, "-" before name for descending order, ties are ordered by eventId */
+    private String sort;
+    /** nextCursor of the previous page, null for the first page */
+    private String cursor;
+    private int limit;
+}
@@ -1,11 +1,14 @@
 package org.parser.fonbetparser.domain;
 
 import lombok.Builder;
-import lombok.Data;
+import lombok.Value;
 
-@Data
+/**
+ * Immutable, one instance is shared by events of all sports and versions through LineDictionary
+ */
+@Value
 @Builder
 public class SportTeam {
-    private String team1;
-    private String team2;
+    String team1;
+    String team2;
 }
@@ -0,0 +1,16 @@
+package org.parser.fonbetparser.line;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Fields of currentLine used by parser
+ */
+@Value
+public class CurrentLine {
+    long packetVersion;
+    List<LineSport> sports;
+    List<LineEvent> events;
+    List<LineFactor> factors;
+}
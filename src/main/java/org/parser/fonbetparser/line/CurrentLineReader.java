@@ -0,0 +1,225 @@
+package org.parser.fonbetparser.line;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Streaming reader of currentLine. Reads sports, events and customFactors token by token
+ * and keeps only fields used by parser, everything else is skipped
+ */
+public final class CurrentLineReader {
+
+    private final JsonReader reader;
+    private final Predicate<LineSport> sportFilter;
+    /** Canonical names, null to keep names as read */
+    private final Interner<String> strings;
+
+    private long packetVersion;
+    private List<LineSport> sports = Collections.emptyList();
+    private List<LineEvent> events = Collections.emptyList();
+    private List<LineFactor> factors = Collections.emptyList();
+
+    /** Ids of accepted sports, null until "sports" is read */
+    private Set<Integer> sportIds;
+    /** Ids of accepted events, null until "events" is read */
+    private Set<Integer> eventIds;
+
+    private CurrentLineReader(JsonReader reader, Predicate<LineSport> sportFilter, Interner<String> strings) {
+        this.reader = reader;
+        this.sportFilter = sportFilter;
+        this.strings = strings;
+    }
+
+    /**
+     * Read currentLine from stream
+     * @param in stream with JSON in UTF-8
+     * @param sportFilter sports to keep. Events of other sports and their factors are skipped
+     *                    when "sports" comes before them in the payload
+     * @return fields of currentLine used by parser
+     * @throws IOException if stream is not a valid currentLine
+     */
+    public static CurrentLine read(InputStream in, Predicate<LineSport> sportFilter) throws IOException {
+        return read(in, sportFilter, null);
+    }
+
+    /**
+     * Read currentLine from stream, names of kept sports and events are replaced by their canonical instances
+     * @param in stream with JSON in UTF-8
+     * @param sportFilter sports to keep
+     * @param strings canonical names shared with previous reads, null to keep names as read
+     * @return fields of currentLine used by parser
+     * @throws IOException if stream is not a valid currentLine
+     */
+    public static CurrentLine read(InputStream in, Predicate<LineSport> sportFilter,
+                                   Interner<String> strings) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return new CurrentLineReader(reader, sportFilter, strings).readLine();
+        }
+    }
+
+    private CurrentLine readLine() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "packetVersion":
+                    packetVersion = reader.nextLong();
+                    break;
+                case "sports":
+                    readSports();
+                    break;
+                case "events":
+                    readEvents();
+                    break;
+                case "customFactors":
+                    readFactors();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new CurrentLine(packetVersion,
+                Collections.unmodifiableList(sports),
+                Collections.unmodifiableList(events),
+                Collections.unmodifiableList(factors));
+    }
+
+    private void readSports() throws IOException {
+        sports = new ArrayList<>();
+        sportIds = new HashSet<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int id = 0, parentId = 0;
+            String kind = null, name = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextInt();
+                        break;
+                    case "parentId":
+                        parentId = reader.nextInt();
+                        break;
+                    case "kind":
+                        kind = nextString();
+                        break;
+                    case "name":
+                        name = nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            LineSport sport = new LineSport(id, parentId, kind, name);
+            if (sportFilter.test(sport)) {
+                sports.add(strings == null ? sport : new LineSport(id, parentId, intern(kind), intern(name)));
+                sportIds.add(id);
+            }
+        }
+        reader.endArray();
+    }
+
+    private void readEvents() throws IOException {
+        events = new ArrayList<>();
+        eventIds = new HashSet<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int id = 0, parentId = 0, level = 1, sportId = 0;
+            String name = null, team1 = null, team2 = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextInt();
+                        break;
+                    case "parentId":
+                        parentId = reader.nextInt();
+                        break;
+                    case "level":
+                        level = reader.nextInt();
+                        break;
+                    case "sportId":
+                        sportId = reader.nextInt();
+                        break;
+                    case "name":
+                        name = nextString();
+                        break;
+                    case "team1":
+                        team1 = nextString();
+                        break;
+                    case "team2":
+                        team2 = nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (sportIds == null || sportIds.contains(sportId)) {
+                events.add(new LineEvent(id, parentId, level, sportId, intern(name), intern(team1), intern(team2)));
+                eventIds.add(id);
+            }
+        }
+        reader.endArray();
+    }
+
+    private void readFactors() throws IOException {
+        factors = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int eventId = 0, factorId = 0;
+            float value = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "e":
+                        eventId = reader.nextInt();
+                        break;
+                    case "f":
+                        factorId = reader.nextInt();
+                        break;
+                    case "v":
+                        value = Float.parseFloat(reader.nextString());
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (eventIds == null || eventIds.contains(eventId)) {
+                factors.add(new LineFactor(eventId, factorId, value));
+            }
+        }
+        reader.endArray();
+    }
+
+    private String intern(String value) {
+        return strings == null ? value : strings.intern(value);
+    }
+
+    private String nextString() throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
@@ -0,0 +1,69 @@
+package org.parser.fonbetparser.line;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of values repeated in every download, like names of events and teams.
+ * A value read again maps to the instance seen first, so the new copy dies young instead of being
+ * kept by snapshots. Values not used in the last maxIdleGenerations generations are dropped by advance().
+ * Thread-safe
+ * @param <T> type of values, with equals and hashCode
+ */
+public final class Interner<T> {
+
+    private final ConcurrentHashMap<T, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final int maxIdleGenerations;
+    private volatile int generation;
+
+    /**
+     * @param maxIdleGenerations generations an unused value is kept
+     */
+    public Interner(int maxIdleGenerations) {
+        this.maxIdleGenerations = Math.max(maxIdleGenerations, 1);
+    }
+
+    /**
+     * @param value value, may be null
+     * @return canonical instance equal to value
+     */
+    public T intern(T value) {
+        if (value == null)
+            return null;
+
+        int current = generation;
+        Entry<T> entry = entries.get(value);
+        if (entry == null) {
+            Entry<T> created = new Entry<>(value, current);
+            entry = entries.putIfAbsent(value, created);
+            if (entry == null)
+                return value;
+        }
+        if (entry.generation != current)
+            entry.generation = current;
+        return entry.value;
+    }
+
+    /**
+     * Start next generation and drop values idle for more than maxIdleGenerations
+     */
+    public synchronized void advance() {
+        int current = generation + 1;
+        generation = current;
+        entries.values().removeIf(entry -> current - entry.generation > maxIdleGenerations);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        /** Generation of the last use, written only when it changes */
+        private volatile int generation;
+
+        Entry(T value, int generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.parser.fonbetparser.line;
+
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Changes of currentLine between two snapshot versions. An event tree is changed
+ * when its root or any of its children changed, was added or removed, or got new customFactors
+ */
+@Value
+public class LineDelta {
+    long fromVersion;
+    long toVersion;
+    /** Roots of changed or added event trees */
+    Set<Integer> changedRootIds;
+    /** All events of changed or added event trees, roots included */
+    Set<Integer> changedEventIds;
+    /** Roots which are not in the line anymore */
+    Set<Integer> removedRootIds;
+
+    public static LineDelta empty(long version) {
+        return new LineDelta(version, version, Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+    }
+
+    public boolean isEmpty() {
+        return changedRootIds.isEmpty() && removedRootIds.isEmpty();
+    }
+}
@@ -0,0 +1,164 @@
+package org.parser.fonbetparser.line;
+
+import java.util.*;
+
+/**
+ * Structural diff of two currentLines by event id, (event id, factor id) and sport id
+ */
+public final class LineDiff {
+
+    private final Map<Integer, LineEvent> previousEvents;
+    private final Map<Integer, LineEvent> nextEvents;
+    private final Map<Integer, Integer> rootIds = new HashMap<>();
+
+    private LineDiff(CurrentLine previous, CurrentLine next) {
+        previousEvents = indexEvents(previous.getEvents());
+        nextEvents = indexEvents(next.getEvents());
+    }
+
+    /**
+     * Find event trees changed between two lines
+     * @param previous line of fromVersion
+     * @param next line of toVersion
+     * @param fromVersion version of previous line
+     * @param toVersion version of next line
+     * @return changes of next line against previous
+     */
+    public static LineDelta between(CurrentLine previous, CurrentLine next, long fromVersion, long toVersion) {
+        return new LineDiff(previous, next).diff(previous, next, fromVersion, toVersion);
+    }
+
+    private LineDelta diff(CurrentLine previous, CurrentLine next, long fromVersion, long toVersion) {
+        Set<Integer> changedRootIds = new HashSet<>();
+        Set<Integer> removedRootIds = new HashSet<>();
+
+        for (LineEvent event : next.getEvents()) {
+            LineEvent previousEvent = previousEvents.get(event.getId());
+            if (event.equals(previousEvent))
+                continue;
+
+            int rootId = rootId(event.getId());
+            changedRootIds.add(rootId);
+            if (previousEvent != null && previousEvent.getLevel() <= 1 && rootId != event.getId())
+                removedRootIds.add(event.getId());
+            if (previousEvent != null) {
+                int previousRootId = previousRootId(previousEvent);
+                if (previousRootId != rootId && nextEvents.containsKey(previousRootId))
+                    changedRootIds.add(rootId(previousRootId));
+            }
+        }
+
+        Set<Integer> changedSportIds = changedSportIds(previous.getSports(), next.getSports());
+        if (!changedSportIds.isEmpty()) {
+            for (LineEvent event : next.getEvents()) {
+                if (changedSportIds.contains(event.getSportId()))
+                    changedRootIds.add(rootId(event.getId()));
+            }
+        }
+
+        for (LineEvent event : previous.getEvents()) {
+            if (!nextEvents.containsKey(event.getId())) {
+                if (event.getLevel() > 1 && nextEvents.containsKey(previousRootId(event)))
+                    changedRootIds.add(previousRootId(event));
+                else if (event.getLevel() <= 1)
+                    removedRootIds.add(event.getId());
+            }
+        }
+
+        Map<Long, LineFactor> previousFactors = new HashMap<>(previous.getFactors().size() * 2);
+        for (LineFactor factor : previous.getFactors()) {
+            previousFactors.put(factorKey(factor), factor);
+        }
+        for (LineFactor factor : next.getFactors()) {
+            LineFactor previousFactor = previousFactors.remove(factorKey(factor));
+            if (!factor.equals(previousFactor) && nextEvents.containsKey(factor.getEventId()))
+                changedRootIds.add(rootId(factor.getEventId()));
+        }
+        for (LineFactor removed : previousFactors.values()) {
+            if (nextEvents.containsKey(removed.getEventId()))
+                changedRootIds.add(rootId(removed.getEventId()));
+        }
+
+        Set<Integer> changedEventIds = new HashSet<>();
+        if (!changedRootIds.isEmpty()) {
+            for (LineEvent event : next.getEvents()) {
+                if (changedRootIds.contains(rootId(event.getId())))
+                    changedEventIds.add(event.getId());
+            }
+        }
+
+        return new LineDelta(fromVersion, toVersion,
+                Collections.unmodifiableSet(changedRootIds),
+                Collections.unmodifiableSet(changedEventIds),
+                Collections.unmodifiableSet(removedRootIds));
+    }
+
+    /**
+     * Sports and segments added, removed or changed, and segments of changed sports,
+     * so events of a renamed segment or of a segment moved to another sport are built again
+     * @return ids of changed sports and segments
+     */
+    private static Set<Integer> changedSportIds(List<LineSport> previous, List<LineSport> next) {
+        Map<Integer, LineSport> previousSports = new HashMap<>(previous.size() * 2);
+        for (LineSport sport : previous) {
+            previousSports.put(sport.getId(), sport);
+        }
+
+        Set<Integer> changed = new HashSet<>();
+        for (LineSport sport : next) {
+            if (!sport.equals(previousSports.remove(sport.getId())))
+                changed.add(sport.getId());
+        }
+        changed.addAll(previousSports.keySet());
+        if (changed.isEmpty())
+            return changed;
+
+        boolean added;
+        do {
+            added = false;
+            for (LineSport sport : next) {
+                if (changed.contains(sport.getParentId()) && changed.add(sport.getId()))
+                    added = true;
+            }
+        } while (added);
+        return changed;
+    }
+
+    /**
+     * Root of event in next line, memoized for every event on the way up
+     */
+    private int rootId(int eventId) {
+        Integer rootId = rootIds.get(eventId);
+        if (rootId != null)
+            return rootId;
+
+        LineEvent event = nextEvents.get(eventId);
+        rootId = event == null || event.getLevel() <= 1 || !nextEvents.containsKey(event.getParentId())
+                ? eventId
+                : rootId(event.getParentId());
+        rootIds.put(eventId, rootId);
+        return rootId;
+    }
+
+    /**
+     * Root of removed event in previous line
+     */
+    private int previousRootId(LineEvent event) {
+        while (event.getLevel() > 1 && previousEvents.containsKey(event.getParentId())) {
+            event = previousEvents.get(event.getParentId());
+        }
+        return event.getId();
+    }
+
+    private static Map<Integer, LineEvent> indexEvents(List<LineEvent> events) {
+        Map<Integer, LineEvent> eventsById = new HashMap<>(events.size() * 2);
+        for (LineEvent event : events) {
+            eventsById.put(event.getId(), event);
+        }
+        return eventsById;
+    }
+
+    private static long factorKey(LineFactor factor) {
+        return ((long) factor.getEventId() << 32) | (factor.getFactorId() & 0xffffffffL);
+    }
+}
@@ -0,0 +1,17 @@
+package org.parser.fonbetparser.line;
+
+import lombok.Value;
+
+/**
+ * Event from "events" of currentLine
+ */
+@Value
+public class LineEvent {
+    int id;
+    int parentId;
+    int level;
+    int sportId;
+    String name;
+    String team1;
+    String team2;
+}
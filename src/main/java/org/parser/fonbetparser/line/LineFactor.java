@@ -0,0 +1,13 @@
+package org.parser.fonbetparser.line;
+
+import lombok.Value;
+
+/**
+ * Factor from "customFactors" of currentLine
+ */
+@Value
+public class LineFactor {
+    int eventId;
+    int factorId;
+    float value;
+}
@@ -0,0 +1,257 @@
+package org.parser.fonbetparser.line;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the log written by LineLogWriter. Segments and their indexes are memory-mapped,
+ * records are inflated straight from the mapping and read by CurrentLineReader like a downloaded payload.
+ * Records written after the log was opened are not seen, a record cut by a crash is ignored
+ */
+public final class LineLogReader {
+
+    private final List<Segment> segments;
+
+    private LineLogReader(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Map all segments of directory
+     * @param dir directory of LineLogWriter
+     * @return reader of all records of directory
+     * @throws IOException if directory can't be read
+     */
+    public static LineLogReader open(Path dir) throws IOException {
+        List<Path> logs;
+        try (Stream<Path> files = Files.list(dir)) {
+            logs = files.filter(file -> file.getFileName().toString().endsWith(LineLogWriter.SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        List<Segment> segments = new ArrayList<>(logs.size());
+        for (Path log : logs) {
+            String name = log.getFileName().toString();
+            Path index = log.resolveSibling(name.substring(0, name.length() - LineLogWriter.SEGMENT_SUFFIX.length())
+                    + LineLogWriter.INDEX_SUFFIX);
+            if (Files.exists(index))
+                segments.add(new Segment(map(log), map(index)));
+        }
+        return new LineLogReader(Collections.unmodifiableList(segments));
+    }
+
+    /**
+     * @return number of complete records in all segments
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.records;
+        }
+        return size;
+    }
+
+    /**
+     * Cursor positioned at the first record downloaded at or after time
+     * @param from epoch millis, 0 for the first record
+     * @return cursor over records in order of time
+     */
+    public Cursor cursor(long from) {
+        for (int i = 0; i < segments.size(); i++) {
+            int record = segments.get(i).firstAtOrAfter(from);
+            if (record < segments.get(i).records)
+                return new Cursor(i, record);
+        }
+        return new Cursor(segments.size(), 0);
+    }
+
+    /**
+     * Position in log. Not thread-safe
+     */
+    public final class Cursor {
+        private final Inflater inflater = new Inflater();
+        private int segment;
+        private int record;
+
+        private Cursor(int segment, int record) {
+            this.segment = segment;
+            this.record = record;
+        }
+
+        public boolean hasNext() {
+            return segment < segments.size();
+        }
+
+        /**
+         * Read record and move to the next one
+         * @param sportFilter sports to keep, as for a download
+         * @return recorded line
+         * @throws IOException if record is not a valid currentLine
+         */
+        public LoggedLine next(Predicate<LineSport> sportFilter) throws IOException {
+            ByteBuffer record = nextRecord();
+            long time = record.getLong(4);
+            int size = record.getInt(20);
+            CurrentLine line = CurrentLineReader.read(payload(record), sportFilter);
+            return new LoggedLine(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()),
+                    size, line);
+        }
+
+        /**
+         * Inflate record as it was downloaded and move to the next one
+         * @return raw payload of record
+         * @throws IOException if record can't be inflated
+         */
+        public byte[] nextPayload() throws IOException {
+            ByteBuffer record = nextRecord();
+            byte[] json = new byte[record.getInt(20)];
+            try (InputStream in = payload(record)) {
+                int read = 0;
+                while (read < json.length) {
+                    int n = in.read(json, read, json.length - read);
+                    if (n < 0)
+                        throw new EOFException("Record is shorter than its size " + json.length);
+                    read += n;
+                }
+            }
+            return json;
+        }
+
+        /**
+         * @return record from its header to the end of its deflated payload
+         */
+        private ByteBuffer nextRecord() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            Segment current = segments.get(segment);
+            int offset = current.offset(record);
+            ByteBuffer data = current.data.duplicate();
+            data.position(offset);
+            data.limit(offset + LineLogWriter.HEADER_BYTES + data.getInt(offset));
+
+            if (++record == current.records) {
+                do {
+                    segment++;
+                } while (segment < segments.size() && segments.get(segment).records == 0);
+                record = 0;
+            }
+            return data.slice();
+        }
+
+        private InputStream payload(ByteBuffer record) {
+            ByteBuffer data = record.duplicate();
+            data.position(LineLogWriter.HEADER_BYTES);
+            inflater.reset();
+            return new InflaterInputStream(new ByteBufferInputStream(data.slice()), inflater, 8192);
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Mapped segment with its index. Records are counted by index entries pointing to complete records
+     */
+    private static final class Segment {
+        private final ByteBuffer data;
+        private final ByteBuffer index;
+        private final int records;
+
+        Segment(ByteBuffer data, ByteBuffer index) {
+            this.data = data;
+            this.index = index;
+            int records = index.capacity() / LineLogWriter.INDEX_ENTRY_BYTES;
+            while (records > 0 && !isComplete(records - 1)) {
+                records--;
+            }
+            this.records = records;
+        }
+
+        long time(int record) {
+            return index.getLong(record * LineLogWriter.INDEX_ENTRY_BYTES);
+        }
+
+        int offset(int record) {
+            return (int) index.getLong(record * LineLogWriter.INDEX_ENTRY_BYTES + 8);
+        }
+
+        /**
+         * Binary search in index
+         * @return first record with time >= given one, records if there is none
+         */
+        int firstAtOrAfter(long time) {
+            int low = 0;
+            int high = records;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (time(mid) < time)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+
+        private boolean isComplete(int record) {
+            long offset = index.getLong(record * LineLogWriter.INDEX_ENTRY_BYTES + 8);
+            return offset + LineLogWriter.HEADER_BYTES <= data.capacity()
+                    && offset + LineLogWriter.HEADER_BYTES + data.getInt((int) offset) <= data.capacity();
+        }
+    }
+
+    /**
+     * Stream over bytes of mapped record
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
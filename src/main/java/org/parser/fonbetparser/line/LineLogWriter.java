@@ -0,0 +1,122 @@
+package org.parser.fonbetparser.line;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Appends raw currentLine payloads to a log of segment files in one directory. Every record is
+ * deflated and written after a header: compressed length, time, packetVersion and raw length.
+ * Segment NNN.log is named by the time of its first record and has an index NNN.idx
+ * of (time, offset) pairs, one per record. A new writer always starts a new segment
+ */
+public final class LineLogWriter implements Closeable {
+
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+    /** int compressed length, long time, long packetVersion, int raw length */
+    static final int HEADER_BYTES = 24;
+    /** long time, long offset */
+    static final int INDEX_ENTRY_BYTES = 16;
+
+    private final Path dir;
+    private final long segmentSize;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+
+    private FileChannel segment;
+    private FileChannel index;
+    /* Positions of the next record, a failed write is overwritten by the next one */
+    private long position;
+    private long indexPosition;
+
+    /**
+     * @param dir directory of segments, created on first append
+     * @param segmentSize size after which a new segment is started, at most 2GB to be mapped in one buffer
+     */
+    public LineLogWriter(Path dir, long segmentSize) {
+        if (segmentSize <= HEADER_BYTES || segmentSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Segment size must be between " + HEADER_BYTES + " bytes and 2GB");
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Append one payload
+     * @param time epoch millis of download
+     * @param packetVersion packetVersion of line
+     * @param json raw payload
+     * @throws IOException error of write, the record is lost but the log stays readable
+     */
+    public synchronized void append(long time, long packetVersion, byte[] json) throws IOException {
+        byte[] compressed = deflate(json);
+        long recordBytes = HEADER_BYTES + (long) compressed.length;
+        if (segment == null || position > 0 && position + recordBytes > segmentSize)
+            roll(time);
+
+        header.clear();
+        header.putInt(compressed.length).putLong(time).putLong(packetVersion).putInt(json.length).flip();
+        writeFully(segment, position, header, ByteBuffer.wrap(compressed));
+
+        indexEntry.clear();
+        indexEntry.putLong(time).putLong(position).flip();
+        writeFully(index, indexPosition, indexEntry);
+        position += recordBytes;
+        indexPosition += INDEX_ENTRY_BYTES;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeSegment();
+        deflater.end();
+    }
+
+    private void roll(long time) throws IOException {
+        closeSegment();
+        Files.createDirectories(dir);
+        String name = String.format("%020d", time);
+        segment = FileChannel.open(dir.resolve(name + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        index = FileChannel.open(dir.resolve(name + INDEX_SUFFIX),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        position = 0;
+        indexPosition = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        try {
+            if (segment != null)
+                segment.close();
+        } finally {
+            if (index != null)
+                index.close();
+            segment = null;
+            index = null;
+        }
+    }
+
+    private byte[] deflate(byte[] json) throws IOException {
+        deflater.reset();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 8 + 64);
+        try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater, 8192)) {
+            deflating.write(json);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeFully(FileChannel channel, long position, ByteBuffer... buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.parser.fonbetparser.line;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable currentLine downloaded by one poll. Shared by requests for all sports.
+ * Version is increased only when content of currentLine changed
+ */
+@Value
+public class LineSnapshot {
+    /** Local version of content */
+    long version;
+    LocalDateTime fetchStart;
+    LocalDateTime fetchEnd;
+    CurrentLine line;
+    /** Changes against previous version, null for the first snapshot */
+    LineDelta delta;
+
+    /**
+     * Time passed since snapshot was downloaded
+     * @return age of snapshot
+     */
+    public Duration getAge() {
+        return Duration.between(fetchEnd, LocalDateTime.now());
+    }
+}
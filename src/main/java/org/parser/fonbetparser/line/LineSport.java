@@ -0,0 +1,14 @@
+package org.parser.fonbetparser.line;
+
+import lombok.Value;
+
+/**
+ * Sport or segment from "sports" of currentLine
+ */
+@Value
+public class LineSport {
+    int id;
+    int parentId;
+    String kind;
+    String name;
+}
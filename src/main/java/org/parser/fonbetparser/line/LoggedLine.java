@@ -0,0 +1,17 @@
+package org.parser.fonbetparser.line;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Line read from the log of LineLogWriter
+ */
+@Value
+public class LoggedLine {
+    /** When the line was downloaded */
+    LocalDateTime time;
+    /** Size of raw payload, bytes */
+    int size;
+    CurrentLine line;
+}
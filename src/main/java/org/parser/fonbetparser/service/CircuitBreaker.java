@@ -0,0 +1,86 @@
+package org.parser.fonbetparser.service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Failures of one upstream host. Opens after failureThreshold failures in a row and rejects requests
+ * for openTime, then lets one trial request through: its success closes the breaker, its failure opens it again.
+ * A trial without outcome, e.g. cancelled, opens it again as well; one lasting longer than openTime
+ * is given up and the next request becomes the trial
+ */
+class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    /** Start of the trial request of HALF_OPEN */
+    private long trialAt;
+
+    /**
+     * @param failureThreshold consecutive failures opening the breaker
+     * @param openNanos time requests are rejected after opening, ns
+     * @param nanoClock source of System.nanoTime()
+     */
+    CircuitBreaker(int failureThreshold, long openNanos, LongSupplier nanoClock) {
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.openNanos = openNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Ask for permission to send a request. Every permitted request must end with onSuccess, onFailure or release
+     * @return false if host is skipped now
+     */
+    synchronized boolean tryAcquire() {
+        long now = nanoClock.getAsLong();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt < openNanos)
+                    return false;
+                state = State.HALF_OPEN;
+                trialAt = now;
+                return true;
+            default:
+                if (now - trialAt < openNanos)
+                    return false;
+                trialAt = now;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+        }
+    }
+
+    /**
+     * End permitted request without outcome: a trial opens the breaker again for openTime,
+     * other requests change nothing
+     */
+    synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
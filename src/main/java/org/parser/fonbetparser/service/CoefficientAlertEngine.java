@@ -0,0 +1,241 @@
+package org.parser.fonbetparser.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.CoefficientAlert;
+import org.parser.fonbetparser.domain.Factor;
+import org.parser.fonbetparser.line.LineDelta;
+import org.parser.fonbetparser.line.LineFactor;
+import org.parser.fonbetparser.line.LineSnapshot;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+
+/**
+ * Checks Coefficients of events changed by every new snapshot against alert rules: implied probability
+ * of complementary outcomes and moves of single coefficients. Runs on one thread of its own, a snapshot
+ * arriving while the previous one is checked waits, and only the latest waiting snapshot is checked,
+ * so the engine never takes more than one core and never queues up behind the poller
+ */
+@Component
+@Slf4j
+public class CoefficientAlertEngine {
+
+    /** Outcomes of one event covering all results of a match, each set is checked on its own */
+    static final Factor[][] COMPLEMENTARY_OUTCOMES = {
+            {Factor.WIN_1, Factor.DRAW, Factor.WIN_2},
+            {Factor.WIN_1_OR_DRAW, Factor.WIN_2},
+            {Factor.DRAW_OR_WIN_2, Factor.WIN_1},
+            {Factor.WIN_1_OR_WIN_2, Factor.DRAW},
+            {Factor.HANDICAP_1, Factor.HANDICAP_2},
+            {Factor.TOTAL_OVER, Factor.TOTAL_UNDER}
+    };
+
+    /** Snapshots after which all events are checked, to forget events of removed trees */
+    private static final int FULL_CHECK_INTERVAL = 100;
+    private static final Factor[] FACTORS = Factor.values();
+
+    private final LineSnapshotPoller snapshotPoller;
+    private final ParserMetrics metrics;
+    private final float probabilitySum;
+    private final float moveThreshold;
+    private final int recentSize;
+
+    /** Values of events as of the latest checked snapshot by ordinal of Factor, NaN if factor wasn't seen */
+    private final Map<Integer, float[]> lastValues = new HashMap<>();
+    private long checkedVersion = -1;
+    private int checksSinceFull;
+
+    private final Deque<CoefficientAlert> recent = new ArrayDeque<>();
+    private final Sinks.Many<CoefficientAlert> alerts = Sinks.many().multicast().directBestEffort();
+    private Scheduler scheduler;
+    private Disposable subscription;
+
+    public CoefficientAlertEngine(LineSnapshotPoller snapshotPoller, ParserMetrics metrics,
+                                  FonbetLiveProperties properties) {
+        this.snapshotPoller = snapshotPoller;
+        this.metrics = metrics;
+        this.probabilitySum = properties.getAlertProbabilitySum();
+        this.moveThreshold = properties.getAlertMoveThreshold();
+        this.recentSize = Math.max(properties.getAlertRecentSize(), 0);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Schedulers.newSingle("coefficient-alerts", true);
+        subscription = snapshotPoller.updates()
+                .onBackpressureLatest()
+                .publishOn(scheduler, 1)
+                .subscribe(snapshot -> {
+                    try {
+                        check(snapshot);
+                    } catch (RuntimeException e) {
+                        log.error("Error while checking coefficient alerts " + e);
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null)
+            subscription.dispose();
+        if (scheduler != null)
+            scheduler.dispose();
+    }
+
+    /**
+     * Check events whose Coefficients changed since the previously checked snapshot. If snapshots were
+     * skipped, or delta is unknown, all events are compared with their last checked values instead
+     * @param snapshot new snapshot
+     * @return raised alerts
+     */
+    synchronized List<CoefficientAlert> check(LineSnapshot snapshot) {
+        long start = System.nanoTime();
+        LineDelta delta = snapshot.getDelta();
+        boolean full = delta == null || delta.getFromVersion() != checkedVersion
+                || ++checksSinceFull >= FULL_CHECK_INTERVAL;
+        Set<Integer> changedEventIds = full ? null : delta.getChangedEventIds();
+
+        Map<Integer, float[]> values = new HashMap<>();
+        if (full || !changedEventIds.isEmpty()) {
+            for (LineFactor lineFactor : snapshot.getLine().getFactors()) {
+                Factor factor = Factor.byId(lineFactor.getFactorId());
+                if (factor == null || changedEventIds != null && !changedEventIds.contains(lineFactor.getEventId()))
+                    continue;
+                values.computeIfAbsent(lineFactor.getEventId(), CoefficientAlertEngine::emptyValues)
+                        [factor.ordinal()] = lineFactor.getValue();
+            }
+        }
+
+        List<CoefficientAlert> raised = new ArrayList<>();
+        for (Map.Entry<Integer, float[]> entry : values.entrySet()) {
+            float[] previous = lastValues.put(entry.getKey(), entry.getValue());
+            if (previous == null || !Arrays.equals(previous, entry.getValue()))
+                checkEvent(snapshot, entry.getKey(), previous, entry.getValue(), raised);
+        }
+
+        if (full) {
+            lastValues.keySet().retainAll(values.keySet());
+            checksSinceFull = 0;
+        } else {
+            for (Integer eventId : changedEventIds) {
+                if (!values.containsKey(eventId))
+                    lastValues.remove(eventId);
+            }
+            lastValues.keySet().removeAll(delta.getRemovedRootIds());
+        }
+        checkedVersion = snapshot.getVersion();
+
+        publish(raised);
+        metrics.record(ParserMetrics.Stage.ALERT_EVALUATION, start);
+        return raised;
+    }
+
+    /**
+     * @param limit max number of alerts
+     * @return the latest alerts, newest first
+     */
+    public List<CoefficientAlert> getRecent(int limit) {
+        synchronized (recent) {
+            List<CoefficientAlert> res = new ArrayList<>(Math.max(Math.min(limit, recent.size()), 0));
+            Iterator<CoefficientAlert> iterator = recent.descendingIterator();
+            while (iterator.hasNext() && res.size() < limit) {
+                res.add(iterator.next());
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Alerts raised from now on. A subscriber that can't keep up misses alerts, they stay in getRecent
+     * @return hot stream of alerts
+     */
+    public Flux<CoefficientAlert> alerts() {
+        return alerts.asFlux();
+    }
+
+    private void checkEvent(LineSnapshot snapshot, int eventId, float[] previous, float[] current,
+                            List<CoefficientAlert> raised) {
+        if (probabilitySum > 0) {
+            for (Factor[] outcomes : COMPLEMENTARY_OUTCOMES) {
+                float sum = impliedProbabilitySum(current, outcomes);
+                if (sum < probabilitySum && (previous == null || sum != impliedProbabilitySum(previous, outcomes))) {
+                    List<Float> outcomeValues = new ArrayList<>(outcomes.length);
+                    for (Factor factor : outcomes) {
+                        outcomeValues.add(current[factor.ordinal()]);
+                    }
+                    raised.add(alert(snapshot, CoefficientAlert.Type.IMPLIED_PROBABILITY, eventId,
+                            Arrays.asList(outcomes), outcomeValues, sum));
+                }
+            }
+        }
+
+        if (moveThreshold > 0 && previous != null) {
+            for (int i = 0; i < current.length; i++) {
+                float from = previous[i];
+                float to = current[i];
+                if (from > 0 && to > 0 && Math.abs(to - from) >= moveThreshold * from) {
+                    raised.add(alert(snapshot, CoefficientAlert.Type.MOVE, eventId,
+                            Collections.singletonList(FACTORS[i]), Arrays.asList(from, to), (to - from) / from));
+                }
+            }
+        }
+    }
+
+    private void publish(List<CoefficientAlert> raised) {
+        if (raised.isEmpty())
+            return;
+
+        synchronized (recent) {
+            for (CoefficientAlert alert : raised) {
+                if (recent.size() == recentSize)
+                    recent.pollFirst();
+                if (recentSize > 0)
+                    recent.addLast(alert);
+            }
+        }
+        for (CoefficientAlert alert : raised) {
+            alerts.tryEmitNext(alert);
+        }
+    }
+
+    /**
+     * @return sum of 1 / value of outcomes, NaN if any of them isn't offered
+     */
+    private static float impliedProbabilitySum(float[] values, Factor[] outcomes) {
+        float sum = 0;
+        for (Factor factor : outcomes) {
+            float value = values[factor.ordinal()];
+            if (!(value > 0))
+                return Float.NaN;
+            sum += 1 / value;
+        }
+        return sum;
+    }
+
+    private static CoefficientAlert alert(LineSnapshot snapshot, CoefficientAlert.Type type, int eventId,
+                                          List<Factor> factors, List<Float> values, float score) {
+        return CoefficientAlert.builder()
+                .type(type)
+                .eventId(eventId)
+                .factors(factors)
+                .values(values)
+                .score(score)
+                .snapshotVersion(snapshot.getVersion())
+                .time(snapshot.getFetchEnd())
+                .build();
+    }
+
+    private static float[] emptyValues(Integer eventId) {
+        float[] values = new float[FACTORS.length];
+        Arrays.fill(values, Float.NaN);
+        return values;
+    }
+}
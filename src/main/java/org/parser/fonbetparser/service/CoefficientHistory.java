@@ -0,0 +1,317 @@
+package org.parser.fonbetparser.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.CoefficientChange;
+import org.parser.fonbetparser.domain.CoefficientMove;
+import org.parser.fonbetparser.domain.Factor;
+import org.parser.fonbetparser.line.LineFactor;
+import org.parser.fonbetparser.line.LineSnapshot;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Changes of Coefficients of every event, recorded from every new snapshot. Only changed values
+ * are stored, one entry per (event id, factor) in primitive columns of a ring buffer. Entries
+ * older than fonbet.live.history-retention are dropped, and the oldest entry is overwritten
+ * when the buffer reaches fonbet.live.history-size
+ */
+@Component
+@Slf4j
+public class CoefficientHistory {
+
+    /** time 8, event id 4, factor 1, value 4, previous value 4, previous entry of event 8 */
+    static final int ENTRY_BYTES = 29;
+
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final long NONE = -1;
+    private static final Factor[] FACTORS = Factor.values();
+
+    private final LineSnapshotPoller snapshotPoller;
+    private final int maxCapacity;
+    private final long retentionMillis;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /* Entry with sequence number seq is at index seq % capacity */
+    private long[] times;
+    private int[] eventIds;
+    private byte[] factors;
+    private float[] values;
+    /** NaN when factor appeared */
+    private float[] previousValues;
+    /** Sequence number of the previous entry of the same event, NONE for the first one */
+    private long[] previousOfEvent;
+    /** Sequence number of the oldest kept entry */
+    private long head;
+    /** Sequence number of the next entry */
+    private long tail;
+
+    /** Sequence number of the latest kept entry of event */
+    private final Map<Integer, Long> latestByEvent = new HashMap<>();
+    /** Values of events of the latest line by ordinal of Factor, NaN if factor wasn't seen */
+    private final Map<Integer, float[]> lastValues = new HashMap<>();
+
+    private Disposable subscription;
+
+    public CoefficientHistory(LineSnapshotPoller snapshotPoller, FonbetLiveProperties properties) {
+        this.snapshotPoller = snapshotPoller;
+        this.maxCapacity = (int) Math.min(Integer.MAX_VALUE - 8,
+                properties.getHistorySize().toBytes() / ENTRY_BYTES);
+        this.retentionMillis = properties.getHistoryRetention().toMillis();
+        allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+    }
+
+    @PostConstruct
+    public void start() {
+        subscription = snapshotPoller.updates().subscribe(snapshot -> {
+            try {
+                record(snapshot);
+            } catch (RuntimeException e) {
+                log.error("Error while recording coefficients " + e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null)
+            subscription.dispose();
+    }
+
+    /**
+     * Store values of factors which changed since the previous snapshot
+     * @param snapshot new snapshot
+     */
+    void record(LineSnapshot snapshot) {
+        if (maxCapacity == 0)
+            return;
+
+        long time = toMillis(snapshot.getFetchEnd());
+        lock.writeLock().lock();
+        try {
+            Set<Integer> eventIdsOfLine = new HashSet<>(lastValues.size() * 2);
+            for (LineFactor lineFactor : snapshot.getLine().getFactors()) {
+                Factor factor = Factor.byId(lineFactor.getFactorId());
+                if (factor == null)
+                    continue;
+
+                eventIdsOfLine.add(lineFactor.getEventId());
+                float[] last = lastValues.computeIfAbsent(lineFactor.getEventId(), CoefficientHistory::emptyValues);
+                float previous = last[factor.ordinal()];
+                if (Float.compare(previous, lineFactor.getValue()) != 0) {
+                    last[factor.ordinal()] = lineFactor.getValue();
+                    append(time, lineFactor.getEventId(), factor, lineFactor.getValue(), previous);
+                }
+            }
+            lastValues.keySet().retainAll(eventIdsOfLine);
+
+            while (head < tail && times[index(head)] < time - retentionMillis) {
+                removeHead();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes of all collected factors of event, oldest first
+     * @param eventId id of event
+     * @return changes within retention, empty if event is unknown
+     */
+    public List<CoefficientChange> getHistory(int eventId) {
+        lock.readLock().lock();
+        try {
+            List<CoefficientChange> changes = new ArrayList<>();
+            Long latest = latestByEvent.get(eventId);
+            for (long seq = latest == null ? NONE : latest; seq >= head; seq = previousOfEvent[index(seq)]) {
+                int i = index(seq);
+                changes.add(CoefficientChange.builder()
+                        .eventId(eventId)
+                        .factor(FACTORS[factors[i]])
+                        .time(toTime(times[i]))
+                        .value(values[i])
+                        .previousValue(Float.isNaN(previousValues[i]) ? null : previousValues[i])
+                        .build());
+            }
+            Collections.reverse(changes);
+            return changes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Factors with the largest relative change within the window before the latest snapshot
+     * @param window length of window
+     * @param limit max number of moves
+     * @return moves sorted by absolute relative change, largest first
+     */
+    public List<CoefficientMove> getBiggestMovers(Duration window, int limit) {
+        lock.readLock().lock();
+        try {
+            if (head == tail)
+                return Collections.emptyList();
+
+            long from = times[index(tail - 1)] - window.toMillis();
+            Map<Long, MoveBuilder> moves = new HashMap<>();
+            for (long seq = tail - 1; seq >= head && times[index(seq)] >= from; seq--) {
+                int i = index(seq);
+                MoveBuilder move = moves.computeIfAbsent(((long) eventIds[i] << 8) | factors[i],
+                        key -> new MoveBuilder(i));
+                move.from = Float.isNaN(previousValues[i]) ? values[i] : previousValues[i];
+            }
+
+            List<CoefficientMove> res = new ArrayList<>();
+            for (MoveBuilder move : moves.values()) {
+                if (move.from != 0 && move.from != move.to)
+                    res.add(move.build());
+            }
+            res.sort(Comparator.comparingDouble((CoefficientMove move) -> Math.abs(move.getChange())).reversed());
+            return res.size() > limit ? new ArrayList<>(res.subList(0, limit)) : res;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of stored changes
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return tail - head;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return bytes allocated for columns
+     */
+    public long getAllocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) times.length * ENTRY_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void append(long time, int eventId, Factor factor, float value, float previous) {
+        if (tail - head == times.length) {
+            if (times.length < maxCapacity)
+                grow();
+            else
+                removeHead();
+        }
+
+        int i = index(tail);
+        times[i] = time;
+        eventIds[i] = eventId;
+        factors[i] = (byte) factor.ordinal();
+        values[i] = value;
+        previousValues[i] = previous;
+        Long previousSeq = latestByEvent.put(eventId, tail);
+        previousOfEvent[i] = previousSeq == null ? NONE : previousSeq;
+        tail++;
+    }
+
+    private void removeHead() {
+        int i = index(head);
+        Long latest = latestByEvent.get(eventIds[i]);
+        if (latest != null && latest == head)
+            latestByEvent.remove(eventIds[i]);
+        head++;
+    }
+
+    /**
+     * Double capacity of columns, entries keep their sequence numbers
+     */
+    private void grow() {
+        long[] oldTimes = times;
+        int[] oldEventIds = eventIds;
+        byte[] oldFactors = factors;
+        float[] oldValues = values;
+        float[] oldPreviousValues = previousValues;
+        long[] oldPreviousOfEvent = previousOfEvent;
+        int oldCapacity = oldTimes.length;
+
+        allocate((int) Math.min(maxCapacity, Math.max(1L, oldCapacity * 2L)));
+        for (long seq = head; seq < tail; seq++) {
+            int from = (int) (seq % oldCapacity);
+            int to = index(seq);
+            times[to] = oldTimes[from];
+            eventIds[to] = oldEventIds[from];
+            factors[to] = oldFactors[from];
+            values[to] = oldValues[from];
+            previousValues[to] = oldPreviousValues[from];
+            previousOfEvent[to] = oldPreviousOfEvent[from];
+        }
+    }
+
+    private void allocate(int capacity) {
+        times = new long[capacity];
+        eventIds = new int[capacity];
+        factors = new byte[capacity];
+        values = new float[capacity];
+        previousValues = new float[capacity];
+        previousOfEvent = new long[capacity];
+    }
+
+    private int index(long seq) {
+        return (int) (seq % times.length);
+    }
+
+    private static float[] emptyValues(Integer eventId) {
+        float[] values = new float[FACTORS.length];
+        Arrays.fill(values, Float.NaN);
+        return values;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Move of one factor collected from its changes, newest first
+     */
+    private class MoveBuilder {
+        private final int eventId;
+        private final Factor factor;
+        private final long time;
+        private final float to;
+        private float from;
+
+        MoveBuilder(int i) {
+            eventId = eventIds[i];
+            factor = FACTORS[factors[i]];
+            time = times[i];
+            to = values[i];
+        }
+
+        CoefficientMove build() {
+            return CoefficientMove.builder()
+                    .eventId(eventId)
+                    .factor(factor)
+                    .from(from)
+                    .to(to)
+                    .change((to - from) / from)
+                    .time(toTime(time))
+                    .build();
+        }
+    }
+}
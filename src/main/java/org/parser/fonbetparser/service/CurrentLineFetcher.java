@@ -0,0 +1,433 @@
+package org.parser.fonbetparser.service;
+
+import lombok.Value;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.line.LineSport;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Downloads currentLine from fonbet.live.url. A failed download is retried with random backoff,
+ * a host failing again and again is skipped by its circuit breaker for a while. If mirrors are set,
+ * a request slower than fonbet.live.hedge-delay is also sent to the next mirror and the first answer wins,
+ * a failed or skipped host is replaced by the next mirror at once. Only the answer which wins is
+ * remembered for revalidation, counted in metrics and recorded
+ */
+@Component
+public class CurrentLineFetcher implements LineFetcher {
+
+    private final RestTemplate fonbetRestTemplate;
+    private final FonbetLiveProperties properties;
+    private final ParserMetrics metrics;
+    private final LineLogRecorder recorder;
+    /** Canonical names of read lines, null to keep names as read */
+    private final LineDictionary dictionary;
+    /** url first, then mirrors */
+    private final List<Upstream> upstreams;
+    /** Threads of requests to several hosts, null without mirrors */
+    private final ExecutorService hedgePool;
+
+    /** Last downloaded line with its ETag and Last-Modified, used for revalidation */
+    private volatile ValidatedLine lastLine;
+
+    public CurrentLineFetcher(RestTemplate fonbetRestTemplate, FonbetLiveProperties properties,
+                              ParserMetrics metrics, LineLogRecorder recorder, LineDictionary dictionary) {
+        this.fonbetRestTemplate = fonbetRestTemplate;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.recorder = recorder;
+        this.dictionary = dictionary;
+
+        List<Upstream> upstreams = new ArrayList<>();
+        upstreams.add(new Upstream(properties.getUrl(), newBreaker(properties)));
+        for (String mirrorUrl : properties.getMirrorUrls()) {
+            upstreams.add(new Upstream(mirrorUrl, newBreaker(properties)));
+        }
+        this.upstreams = Collections.unmodifiableList(upstreams);
+
+        if (upstreams.size() > 1) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("fonbet-hedge-");
+            threadFactory.setDaemon(true);
+            hedgePool = Executors.newCachedThreadPool(threadFactory);
+        } else {
+            hedgePool = null;
+        }
+    }
+
+    /**
+     * Load JSON from fonbet and read it as a stream, without building JSON tree.
+     * Sends ETag and Last-Modified of the previous response, if server answers 304 Not Modified,
+     * previous line is returned as is
+     * @param sportFilter sports to keep, other sports with their events are skipped while reading
+     * @return currentLine
+     * @throws IOException error of the last attempt, or CircuitOpenException if all hosts are skipped
+     */
+    @Override
+    public CurrentLine fetch(Predicate<LineSport> sportFilter) throws IOException {
+        ValidatedLine previous = lastLine != null && lastLine.getSportFilter() == sportFilter ? lastLine : null;
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Download download = hedgePool == null
+                        ? download(acquire(upstreams.get(0)), sportFilter, previous)
+                        : downloadHedged(sportFilter, previous);
+                return publish(download, sportFilter);
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= properties.getRetries() || !isRetryable(e))
+                    throw e;
+                metrics.retry();
+                backoff(attempt);
+            }
+        }
+    }
+
+    @Override
+    public CurrentLine getLastLine() {
+        ValidatedLine last = lastLine;
+        return last == null ? null : last.getLine();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (hedgePool != null)
+            hedgePool.shutdownNow();
+    }
+
+    CircuitBreaker.State getCircuitState(int upstream) {
+        return upstreams.get(upstream).getBreaker().getState();
+    }
+
+    /**
+     * Remember the line for revalidation, count and record it. Called for the winning download only
+     * @return line of download
+     */
+    private CurrentLine publish(Download download, Predicate<LineSport> sportFilter) {
+        if (download.isNotModified()) {
+            metrics.notModified();
+            return download.getLine();
+        }
+
+        metrics.downloaded(download.getLine(), download.getSize());
+        if (download.getJson() != null)
+            recorder.record(download.getLine(), download.getJson());
+        lastLine = new ValidatedLine(sportFilter, download.getETag(), download.getLastModified(), download.getLine());
+        return download.getLine();
+    }
+
+    /**
+     * Send request to the first host which isn't skipped. While no answer came, every hedge-delay
+     * the request is also sent to the next host. Once an answer wins, slower requests are cancelled
+     */
+    private Download downloadHedged(Predicate<LineSport> sportFilter, ValidatedLine previous) throws IOException {
+        CompletionService<Download> completion = new ExecutorCompletionService<>(hedgePool);
+        List<Attempt> started = new ArrayList<>(upstreams.size());
+        Iterator<Upstream> next = upstreams.iterator();
+        long hedgeNanos = properties.getHedgeDelay().toNanos();
+        Throwable failure = null;
+
+        try {
+            int running = submitNext(completion, started, next, sportFilter, previous);
+            while (running > 0) {
+                Future<Download> done = next.hasNext() && hedgeNanos > 0
+                        ? completion.poll(hedgeNanos, TimeUnit.NANOSECONDS)
+                        : completion.take();
+                if (done == null) {
+                    int hedged = submitNext(completion, started, next, sportFilter, previous);
+                    if (hedged > 0)
+                        metrics.hedged();
+                    running += hedged;
+                    continue;
+                }
+
+                running--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                    running += submitNext(completion, started, next, sportFilter, previous);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for fonbet");
+        } finally {
+            for (Attempt attempt : started) {
+                attempt.getFuture().cancel(true);
+                if (attempt.getClaimed().compareAndSet(false, true))
+                    attempt.getUpstream().getBreaker().release();
+            }
+        }
+
+        if (failure == null) {
+            CircuitOpenException open = new CircuitOpenException();
+            metrics.error(open);
+            throw open;
+        }
+        if (failure instanceof IOException)
+            throw (IOException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        throw new IOException(failure);
+    }
+
+    /**
+     * Start request to the next host which isn't skipped. A request cancelled before it ran
+     * releases its permit in downloadHedged, a running one reports its outcome itself
+     * @return 1 if request was started, 0 if there are no more hosts
+     */
+    private int submitNext(CompletionService<Download> completion, List<Attempt> started,
+                           Iterator<Upstream> next, Predicate<LineSport> sportFilter, ValidatedLine previous) {
+        while (next.hasNext()) {
+            Upstream upstream = next.next();
+            if (upstream.getBreaker().tryAcquire()) {
+                AtomicBoolean claimed = new AtomicBoolean();
+                Future<Download> future = completion.submit(() -> {
+                    if (!claimed.compareAndSet(false, true))
+                        throw new CancellationException();
+                    return download(upstream, sportFilter, previous);
+                });
+                started.add(new Attempt(upstream, future, claimed));
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private Upstream acquire(Upstream upstream) throws CircuitOpenException {
+        if (upstream.getBreaker().tryAcquire())
+            return upstream;
+        CircuitOpenException open = new CircuitOpenException();
+        metrics.error(open);
+        throw open;
+    }
+
+    /**
+     * One request to host permitted by its breaker, result is reported to the breaker.
+     * A request cancelled because another host answered first isn't a failure of its host,
+     * its permit is released
+     */
+    private Download download(Upstream upstream, Predicate<LineSport> sportFilter,
+                              ValidatedLine previous) throws IOException {
+        long start = System.nanoTime();
+        boolean reported = false;
+        try {
+            Download response = fonbetRestTemplate.execute(upstream.getUrl(), HttpMethod.GET,
+                    clientHttpRequest -> {
+                        if (previous == null)
+                            return;
+                        if (previous.getETag() != null)
+                            clientHttpRequest.getHeaders().setIfNoneMatch(previous.getETag());
+                        if (previous.getLastModified() != null)
+                            clientHttpRequest.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, previous.getLastModified());
+                    },
+                    clientHttpResponse -> read(clientHttpResponse, sportFilter, previous, start));
+            if (response == null)
+                throw new IOException("No JSON");
+            upstream.getBreaker().onSuccess();
+            reported = true;
+            return response;
+        } catch (IOException | RuntimeException e) {
+            if (Thread.currentThread().isInterrupted())
+                throw e;
+            upstream.getBreaker().onFailure();
+            reported = true;
+            metrics.error(e);
+            throw e;
+        } finally {
+            if (!reported)
+                upstream.getBreaker().release();
+        }
+    }
+
+    /**
+     * Client errors except 429 Too Many Requests won't change on retry, skipped hosts neither
+     */
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof CircuitOpenException)
+            return false;
+        if (e instanceof HttpClientErrorException)
+            return ((HttpClientErrorException) e).getRawStatusCode() == HttpStatus.TOO_MANY_REQUESTS.value();
+        return true;
+    }
+
+    /**
+     * Sleep random time up to retry-backoff * 2^attempt, so retries of several clients don't come together
+     */
+    private void backoff(int attempt) throws InterruptedIOException {
+        long maxMillis = properties.getRetryBackoff().toMillis() << Math.min(attempt, 16);
+        if (maxMillis <= 0)
+            return;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for retry");
+        }
+    }
+
+    private static CircuitBreaker newBreaker(FonbetLiveProperties properties) {
+        return new CircuitBreaker(properties.getCircuitFailureThreshold(),
+                properties.getCircuitOpenTime().toNanos(), System::nanoTime);
+    }
+
+    /**
+     * Read response, nothing is published here: slower hedged requests may read their answer too
+     */
+    private Download read(ClientHttpResponse clientHttpResponse, Predicate<LineSport> sportFilter,
+                          ValidatedLine previous, long start) throws IOException {
+        metrics.record(ParserMetrics.Stage.DOWNLOAD, start);
+        if (clientHttpResponse.getRawStatusCode() == HttpStatus.NOT_MODIFIED.value()) {
+            if (previous == null)
+                throw new IOException("Not Modified for request without validators");
+            return new Download(previous.getLine(), true, null, null, 0, null);
+        }
+
+        long parseStart = System.nanoTime();
+        ByteArrayOutputStream copy = recorder.isEnabled() ? new ByteArrayOutputStream(1 << 20) : null;
+        CountingInputStream body = new CountingInputStream(clientHttpResponse.getBody(), copy);
+        CurrentLine line = CurrentLineReader.read(body, sportFilter,
+                dictionary == null ? null : dictionary.getStrings());
+        metrics.record(ParserMetrics.Stage.JSON_PARSE, parseStart);
+
+        HttpHeaders headers = clientHttpResponse.getHeaders();
+        return new Download(line, false, headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED),
+                body.getCount(), copy == null ? null : copy.toByteArray());
+    }
+
+    /**
+     * Counts bytes read from response body and copies them for LineLogRecorder
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        /** null if body isn't recorded */
+        private final ByteArrayOutputStream copy;
+        private long count;
+
+        CountingInputStream(InputStream in, ByteArrayOutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+                if (copy != null)
+                    copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+                if (copy != null)
+                    copy.write(b, off, n);
+            }
+            return n;
+        }
+
+        /**
+         * Skipped bytes are read, so that the copy stays complete
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            if (copy != null) {
+                int skipped = n > 0 ? read(new byte[(int) Math.min(n, 8192)]) : 0;
+                return Math.max(skipped, 0);
+            }
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * All hosts are skipped by their circuit breakers after failures
+     */
+    static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException() {
+            super("All fonbet hosts are failing, requests are paused");
+        }
+    }
+
+    @Value
+    private static class Upstream {
+        String url;
+        CircuitBreaker breaker;
+    }
+
+    /**
+     * Hedged request, claimed by whoever comes first: the task when it runs or downloadHedged when it's cancelled
+     */
+    @Value
+    private static class Attempt {
+        Upstream upstream;
+        Future<Download> future;
+        AtomicBoolean claimed;
+    }
+
+    /**
+     * Answer of one host with its validators
+     */
+    @Value
+    private static class Download {
+        CurrentLine line;
+        /** 304 Not Modified, line is the previous one */
+        boolean notModified;
+        String eTag;
+        String lastModified;
+        /** Bytes of body */
+        long size;
+        /** Raw body for LineLogRecorder, null if recording is off */
+        byte[] json;
+    }
+
+    @Value
+    private static class ValidatedLine {
+        Predicate<LineSport> sportFilter;
+        String eTag;
+        String lastModified;
+        CurrentLine line;
+    }
+}
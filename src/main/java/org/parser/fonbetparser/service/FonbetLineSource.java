@@ -0,0 +1,58 @@
+package org.parser.fonbetparser.service;
+
+import lombok.RequiredArgsConstructor;
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.line.LineSnapshot;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Live or prematch line of fonbet, all sports of the latest snapshot. A poll fails if the snapshot
+ * can't be downloaded or is older than staleAfter, so the store keeps the previous line and counts the failure
+ */
+@RequiredArgsConstructor
+public class FonbetLineSource implements LineSource {
+
+    private final String name;
+    private final LineType lineType;
+    private final Duration pollInterval;
+    private final FonbetLiveParserService parserService;
+    /** Poller of snapshots parserService reads */
+    private final LineSnapshotPoller poller;
+    /** Refresh poller before every poll, false if it is scheduled elsewhere */
+    private final boolean refresh;
+    /** Age of snapshot after which it isn't a successful poll anymore */
+    private final Duration staleAfter;
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getBookmaker() {
+        return "Fonbet";
+    }
+
+    @Override
+    public LineType getLineType() {
+        return lineType;
+    }
+
+    @Override
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    @Override
+    public Map<String, LiveLine> poll() throws IOException {
+        LineSnapshot snapshot = refresh ? poller.refresh() : poller.getSnapshot();
+        if (snapshot.getAge().compareTo(staleAfter) > 0)
+            throw new IOException("Line is stale, last downloaded at " + snapshot.getFetchEnd());
+        return parserService.getTargetSportEvents((Collection<String>) null);
+    }
+}
@@ -1,8 +1,20 @@
 package org.parser.fonbetparser.service;
 
 import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineDelta;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
 
 public interface FonbetLiveParserService {
-    void deserialize();
+    Set<SportEvent> deserialize(CurrentLine currentLine, String sportName);
+    Map<String, Set<SportEvent>> deserialize(CurrentLine currentLine, Collection<String> sportNames);
     LiveLine getTargetSportEvents(String sportName);
+    Mono<LiveLine> getTargetSportEventsAsync(String sportName);
+    Map<String, LiveLine> getTargetSportEvents(Collection<String> sportNames);
+    LineDelta getLineChanges();
 }
@@ -1,193 +1,486 @@
 package org.parser.fonbetparser.service;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
 import org.parser.fonbetparser.domain.*;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.parser.fonbetparser.line.*;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 
 @Service
 @Slf4j
 public class FonbetLiveParserServiceImpl implements FonbetLiveParserService {
 
-    private String sportName;
-    private Set<JsonObject> sportWithCurrentName;
-    private Set<SportEvent> targetSportEvents;
-    private Set<Child> level2sports;
-    private Set<Child> level3sports;
+    private static final int MAX_PARSED_SPORTS = 128;
+
+    private final LineSnapshotPoller snapshotPoller;
+    private final FonbetLiveProperties properties;
+    private final SportNameClassifier classifier;
+    private final ForkJoinPool parserPool;
+    private final ParserMetrics metrics;
+    /** Line type of built LiveLines, the parser is the same for live and prematch lines of fonbet */
+    private final LineType lineType;
+    /** Canonical teams of built events, null to build a new SportTeam for every event */
+    private final LineDictionary dictionary;
+
+    /** Parses of sports requested by getTargetSportEventsAsync and not finished yet */
+    private final Map<String, Mono<LiveLine>> inFlight = new ConcurrentHashMap<>();
+
+    /** Latest result per sport name for incremental mode */
+    private final Map<String, ParsedSport> parsedSports = Collections.synchronizedMap(
+            new LinkedHashMap<String, ParsedSport>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ParsedSport> eldest) {
+                    return size() > MAX_PARSED_SPORTS;
+                }
+            });
 
     /**
-     * Deserialize JSON from fonbet/live
+     * Live line without dictionary
      */
-    @Override
-    public void deserialize() {
-        JsonArray sports, events, factors;
-        JsonObject currentLine;
+    public FonbetLiveParserServiceImpl(LineSnapshotPoller snapshotPoller, FonbetLiveProperties properties,
+                                       SportNameClassifier classifier, ForkJoinPool parserPool,
+                                       ParserMetrics metrics) {
+        this(snapshotPoller, properties, classifier, parserPool, metrics, LineType.LIVE, null);
+    }
 
-        try {
-            currentLine = getCurrentLine();
+    @Autowired
+    public FonbetLiveParserServiceImpl(LineSnapshotPoller snapshotPoller, FonbetLiveProperties properties,
+                                       SportNameClassifier classifier, ForkJoinPool parserPool,
+                                       ParserMetrics metrics, LineDictionary dictionary) {
+        this(snapshotPoller, properties, classifier, parserPool, metrics, LineType.LIVE, dictionary);
+    }
 
-            sports = currentLine.getAsJsonArray("sports");
-            events = currentLine.getAsJsonArray("events");
-            factors = currentLine.getAsJsonArray("customFactors");
+    /**
+     * @param snapshotPoller source of snapshots of one fonbet line
+     * @param lineType line type of built LiveLines
+     * @param dictionary canonical teams, shared with other lines, may be null
+     */
+    public FonbetLiveParserServiceImpl(LineSnapshotPoller snapshotPoller, FonbetLiveProperties properties,
+                                       SportNameClassifier classifier, ForkJoinPool parserPool,
+                                       ParserMetrics metrics, LineType lineType, LineDictionary dictionary) {
+        this.snapshotPoller = snapshotPoller;
+        this.properties = properties;
+        this.classifier = classifier;
+        this.parserPool = parserPool;
+        this.metrics = metrics;
+        this.lineType = lineType;
+        this.dictionary = dictionary;
+    }
 
-            collectSportsByName(sports);
-            collectEvents(events, factors);
+    /**
+     * Deserialize events of one sport from currentLine. Keeps no state between calls
+     * @param currentLine downloaded currentLine
+     * @param sportName name of parsed sport
+     * @return events of sport with their children
+     */
+    @Override
+    public Set<SportEvent> deserialize(CurrentLine currentLine, String sportName) {
+        return deserialize(ParseContext.of(sportName), currentLine).get(sportName);
+    }
 
+    /**
+     * Deserialize events of several sports from currentLine in one pass. Keeps no state between calls
+     * @param currentLine downloaded currentLine
+     * @param sportNames names of parsed sports, null for all sports of currentLine
+     * @return sport name -> events of sport with their children, for every requested sport
+     */
+    @Override
+    public Map<String, Set<SportEvent>> deserialize(CurrentLine currentLine, Collection<String> sportNames) {
+        return deserialize(ParseContext.of(resolveSportNames(currentLine, sportNames), null), currentLine);
+    }
+
+    /**
+     * Changes of the latest snapshot against the previous one
+     * @return changed and removed event trees
+     */
+    @Override
+    public LineDelta getLineChanges() {
+        try {
+            LineSnapshot snapshot = snapshotPoller.getSnapshot();
+            return snapshot.getDelta() != null ? snapshot.getDelta() : LineDelta.empty(snapshot.getVersion());
         } catch (IOException e) {
             log.error("Error while getting JSON from server " + e);
+            return LineDelta.empty(0);
+        }
+    }
+
+    private Map<String, Set<SportEvent>> deserialize(ParseContext context, CurrentLine currentLine) {
+        Map<String, List<LineSport>> segmentsBySportName = collectSportsByName(context, currentLine.getSports());
+        return collectChildren(
+                collectEvents(context, segmentsBySportName, currentLine.getEvents(), currentLine.getFactors()));
+    }
+
+    /**
+     * Names of sports to parse
+     * @param currentLine downloaded currentLine
+     * @param sportNames requested names, null or empty for all sports
+     * @return requested names, or names of all sports of currentLine
+     */
+    private Collection<String> resolveSportNames(CurrentLine currentLine, Collection<String> sportNames) {
+        if (sportNames != null && !sportNames.isEmpty())
+            return sportNames;
+
+        Set<String> allSportNames = new LinkedHashSet<>();
+        for (LineSport sport : currentLine.getSports()) {
+            if ("sport".equals(sport.getKind()) && sport.getName() != null)
+                allSportNames.add(sport.getName());
         }
+        return allSportNames;
     }
 
     /**
-     * Collect JSON line to custom object
+     * Collect JSON line to custom object. startTime and endTime of result
+     * are the download time of snapshot it was built from
      * @param sportName name of parsed sport
      * @return deserialized JSON
      */
     @Override
     public LiveLine getTargetSportEvents(String sportName) {
-        this.sportName = sportName;
-        LocalDateTime start = LocalDateTime.now();
-        deserialize();
-        LocalDateTime end = LocalDateTime.now();
-        log.info("Total time for parsing: " + ChronoUnit.MILLIS.between(start, end) + "\n\n");
-
-        return LiveLine.builder()
-                .sportEvents(targetSportEvents)
-                .bookmaker("Fonbet")
-                .lineType(LineType.LIVE)
-                .startTime(start)
-                .endTime(end)
-                .build();
+        return getTargetSportEvents(Collections.singletonList(sportName)).get(sportName);
+    }
+
+    /**
+     * Same as getTargetSportEvents, but download and parse run on boundedElastic scheduler instead of
+     * the calling thread. Concurrent requests for one sport share one download and parse
+     * @param sportName name of parsed sport
+     * @return deserialized JSON, emitted when ready
+     */
+    @Override
+    public Mono<LiveLine> getTargetSportEventsAsync(String sportName) {
+        return Mono.defer(() -> inFlight.computeIfAbsent(sportName, name ->
+                Mono.fromCallable(() -> getTargetSportEvents(name))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .doFinally(signal -> inFlight.remove(name))
+                        .cache()));
+    }
+
+    /**
+     * Collect JSON line to custom objects of several sports, all of them are built in one pass
+     * over currentLine. startTime and endTime of results are the download time of snapshot they were built from.
+     * While fonbet is failing the last snapshot is served with stale flag
+     * @param sportNames names of parsed sports, null or empty for all sports of currentLine
+     * @return sport name -> deserialized JSON
+     */
+    @Override
+    public Map<String, LiveLine> getTargetSportEvents(Collection<String> sportNames) {
+        LineSnapshot snapshot;
+        Map<String, Set<SportEvent>> targetSportEvents;
+
+        try {
+            snapshot = snapshotPoller.getSnapshot();
+            targetSportEvents = deserialize(snapshot, resolveSportNames(snapshot.getLine(), sportNames));
+        } catch (IOException e) {
+            log.error("Error while getting JSON from server " + e);
+            snapshot = null;
+            targetSportEvents = new LinkedHashMap<>();
+            if (sportNames != null) {
+                for (String sportName : sportNames) {
+                    targetSportEvents.put(sportName, Collections.emptySet());
+                }
+            }
+        }
+
+        Map<String, LiveLine> liveLines = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<SportEvent>> sportEvents : targetSportEvents.entrySet()) {
+            LiveLine.LiveLineBuilder liveLine = LiveLine.builder()
+                    .sportEvents(sportEvents.getValue())
+                    .bookmaker("Fonbet")
+                    .lineType(lineType)
+                    .stale(true);
+            if (snapshot != null) {
+                liveLine.snapshotVersion(snapshot.getVersion())
+                        .startTime(snapshot.getFetchStart())
+                        .endTime(snapshot.getFetchEnd())
+                        .stale(snapshot.getAge().compareTo(properties.getStaleAfter()) > 0);
+            }
+            liveLines.put(sportEvents.getKey(), liveLine.build());
+        }
+        return liveLines;
     }
 
     /**
-     * Parse events from JSON and collect in to SportEvent objects
+     * Deserialize events of several sports from snapshot. In incremental mode only event trees
+     * changed since the previous result for a sport are built again, others are reused.
+     * Sports which need a rebuild are parsed together: one pass over changed events
+     * and at most one full pass for sports without a previous result
+     * @param snapshot latest snapshot
+     * @param sportNames names of parsed sports
+     * @return sport name -> events of sport with their children
+     */
+    private Map<String, Set<SportEvent>> deserialize(LineSnapshot snapshot, Collection<String> sportNames) {
+        if (!properties.isIncremental())
+            return deserialize(ParseContext.of(sportNames, null), snapshot.getLine());
+
+        LineDelta delta = snapshot.getDelta();
+        Map<String, Set<SportEvent>> result = new LinkedHashMap<>();
+        Map<String, ParsedSport> incrementalSports = new LinkedHashMap<>();
+        List<String> fullSportNames = new ArrayList<>();
+
+        for (String sportName : sportNames) {
+            ParsedSport cached = parsedSports.get(sportName);
+            if (cached != null && cached.getVersion() == snapshot.getVersion()) {
+                result.put(sportName, cached.getSportEvents());
+            } else if (cached != null && delta != null && delta.getFromVersion() == cached.getVersion()) {
+                incrementalSports.put(sportName, cached);
+            } else {
+                fullSportNames.add(sportName);
+            }
+        }
+
+        if (!incrementalSports.isEmpty()) {
+            Map<String, Set<SportEvent>> changed = deserialize(
+                    ParseContext.of(incrementalSports.keySet(), delta.getChangedEventIds()), snapshot.getLine());
+            for (Map.Entry<String, ParsedSport> cached : incrementalSports.entrySet()) {
+                Map<Integer, SportEvent> sportEventsById = new HashMap<>(cached.getValue().getSportEventsById());
+                sportEventsById.keySet().removeAll(delta.getRemovedRootIds());
+                sportEventsById.keySet().removeAll(delta.getChangedRootIds());
+                result.put(cached.getKey(), cache(snapshot, cached.getKey(), sportEventsById, changed.get(cached.getKey())));
+            }
+        }
+
+        if (!fullSportNames.isEmpty()) {
+            Map<String, Set<SportEvent>> parsed = deserialize(ParseContext.of(fullSportNames, null), snapshot.getLine());
+            for (String sportName : fullSportNames) {
+                result.put(sportName, cache(snapshot, sportName, new HashMap<>(), parsed.get(sportName)));
+            }
+        }
+
+        Map<String, Set<SportEvent>> ordered = new LinkedHashMap<>();
+        for (String sportName : sportNames) {
+            ordered.put(sportName, result.get(sportName));
+        }
+        return ordered;
+    }
+
+    /**
+     * Store result of a sport for the next snapshot
+     * @param snapshot snapshot result was built from
+     * @param sportName name of parsed sport
+     * @param sportEventsById reused events of previous result
+     * @param changedSportEvents events built from snapshot
+     * @return all events of sport
+     */
+    private Set<SportEvent> cache(LineSnapshot snapshot, String sportName, Map<Integer, SportEvent> sportEventsById,
+                                  Set<SportEvent> changedSportEvents) {
+        for (SportEvent sportEvent : changedSportEvents) {
+            sportEventsById.put(sportEvent.getEventId(), sportEvent);
+        }
+
+        ParsedSport parsed = new ParsedSport(snapshot.getVersion(),
+                Collections.unmodifiableMap(sportEventsById),
+                Collections.unmodifiableSet(new HashSet<>(sportEventsById.values())));
+        parsedSports.put(sportName, parsed);
+        return parsed.getSportEvents();
+    }
+
+    /**
+     * Parse events from JSON and collect in to SportEvent objects.
+     * Sports and customFactors are indexed once, so every event is joined in constant time.
+     * Every event is built once, even if it belongs to several requested sports.
+     * With fonbet.live.parallelism other than 1, large lines are split into chunks built on parserPool,
+     * chunks are merged in order, so the result is the same as of sequential build
+     * @param context current parse
+     * @param segmentsBySportName sport name -> segments of this sport
      * @param events all events from JSON
      * @param factors all customFactors from JSON
+     * @return root events of requested sports and their children grouped by parent id
+     */
+    CollectedEvents collectEvents(ParseContext context, Map<String, List<LineSport>> segmentsBySportName,
+                                  List<LineEvent> events, List<LineFactor> factors) {
+        long start = System.nanoTime();
+        Map<Integer, LineSport> sportsById = new HashMap<>();
+        Map<Integer, List<String>> sportNamesBySportId = new HashMap<>();
+        for (Map.Entry<String, List<LineSport>> segments : segmentsBySportName.entrySet()) {
+            for (LineSport segment : segments.getValue()) {
+                sportsById.put(segment.getId(), segment);
+                sportNamesBySportId.computeIfAbsent(segment.getId(), id -> new ArrayList<>(1)).add(segments.getKey());
+            }
+        }
+
+        CollectedEvents collectedEvents;
+        int chunkSize = properties.getParallelChunkSize();
+        if (properties.getParallelism() != 1 && events.size() > chunkSize) {
+            int factorsChunkSize = Math.max(chunkSize, (int) ((long) factors.size() * chunkSize / events.size()));
+            Map<Integer, List<LineFactor>> factorsByEventId = parserPool.invoke(new ChunkTask<>(
+                    0, factors.size(), factorsChunkSize,
+                    (from, to) -> groupFactorsByEventId(context, factors.subList(from, to)),
+                    FonbetLiveParserServiceImpl::mergeGroups));
+            collectedEvents = parserPool.invoke(new ChunkTask<>(
+                    0, events.size(), chunkSize,
+                    (from, to) -> collectEvents(context, segmentsBySportName.keySet(), sportsById, sportNamesBySportId,
+                            events.subList(from, to), factorsByEventId),
+                    FonbetLiveParserServiceImpl::mergeCollectedEvents));
+        } else {
+            collectedEvents = collectEvents(context, segmentsBySportName.keySet(), sportsById, sportNamesBySportId,
+                    events, groupFactorsByEventId(context, factors));
+        }
+        metrics.record(ParserMetrics.Stage.EVENT_JOIN, start);
+
+        return collectedEvents;
+    }
+
+    /**
+     * Collect events of one chunk
+     * @param context current parse
+     * @param sportNames requested sports
+     * @param sportsById segments of requested sports by id
+     * @param sportNamesBySportId segment id -> requested sports it belongs to
+     * @param events events of chunk
+     * @param factorsByEventId event id -> factors of this event
+     * @return root events of chunk and their children grouped by parent id
      */
-    private void collectEvents(JsonArray events, JsonArray factors) {
-        JsonObject eventObject, sportObject;
+    private CollectedEvents collectEvents(ParseContext context, Collection<String> sportNames,
+                                          Map<Integer, LineSport> sportsById,
+                                          Map<Integer, List<String>> sportNamesBySportId,
+                                          List<LineEvent> events, Map<Integer, List<LineFactor>> factorsByEventId) {
+        LineSport sportObject;
         SportEvent sportEvent;
-        Set<JsonObject> targetFactors;
-        Set<JsonObject> factorsSet = StreamSupport.stream(factors.spliterator(), true)
-                .map(JsonElement::getAsJsonObject)
-                .collect(Collectors.toSet());
-
-        int level;
-        targetSportEvents = new HashSet<>();
-        level2sports = new HashSet<>();
-        level3sports = new HashSet<>();
-
-        LocalDateTime start = LocalDateTime.now();
-        for (JsonElement event : events) {
-            eventObject = event.getAsJsonObject();
-            int eventSportId = eventObject.get("sportId").getAsInt();
-            int eventId = eventObject.get("id").getAsInt();
-            level = eventObject.get("level").getAsInt();
-
-            sportObject = sportWithCurrentName.stream()
-                    .filter(jsonObject -> jsonObject.get("id").getAsInt() == eventSportId)
-                    .findFirst().orElse(null);
+        List<LineFactor> targetFactors;
+
+        List<SportEvent> rootSportEvents = new ArrayList<>();
+        Map<String, List<SportEvent>> rootSportEventsBySportName = new LinkedHashMap<>();
+        Map<Integer, List<Child>> childrenByParentId = new HashMap<>();
+        for (String sportName : sportNames) {
+            rootSportEventsBySportName.put(sportName, new ArrayList<>());
+        }
+
+        for (LineEvent eventObject : events) {
+            int eventId = eventObject.getId();
+            if (!context.accepts(eventId))
+                continue;
+
+            sportObject = sportsById.get(eventObject.getSportId());
 
             if (sportObject != null) {
-                targetFactors = factorsSet.parallelStream()
-                        .filter(jsonObject -> jsonObject.get("e").getAsInt() == eventId)
-                        .collect(Collectors.toSet());
-
-                if (level == 2) {
-                    level2sports.add(Child.builder()
-                            .id(eventId)
-                            .parentId(eventObject.get("parentId").getAsInt())
-                            .name(eventObject.get("name").getAsString())
-                            .coefficients(collectCoefficientsForEvent(targetFactors))
-                            .build()
-                    );
-                    continue;
-                } else if (level == 3) {
-                    level3sports.add(Child.builder()
-                            .id(eventId)
-                            .parentId(eventObject.get("parentId").getAsInt())
-                            .name(eventObject.get("name").getAsString())
-                            .coefficients(collectCoefficientsForEvent(targetFactors))
-                            .build()
-                    );
+                targetFactors = factorsByEventId.getOrDefault(eventId, Collections.emptyList());
+
+                if (eventObject.getLevel() > 1) {
+                    int parentId = eventObject.getParentId();
+                    childrenByParentId
+                            .computeIfAbsent(parentId, id -> new ArrayList<>())
+                            .add(Child.builder()
+                                    .id(eventId)
+                                    .parentId(parentId)
+                                    .name(eventObject.getName())
+                                    .coefficients(collectCoefficientsForEvent(targetFactors))
+                                    .build()
+                            );
                     continue;
                 }
 
                 sportEvent = buildSportEvent(sportObject, eventObject, targetFactors);
-                targetSportEvents.add(sportEvent);
+                rootSportEvents.add(sportEvent);
+                for (String sportName : sportNamesBySportId.get(sportObject.getId())) {
+                    rootSportEventsBySportName.get(sportName).add(sportEvent);
+                }
             }
         }
-        LocalDateTime end = LocalDateTime.now();
-        log.info("Total time for adding events: " + ChronoUnit.MILLIS.between(start, end));
+        return new CollectedEvents(rootSportEvents, rootSportEventsBySportName, childrenByParentId);
+    }
 
-        collectChildren();
+    /**
+     * Append events of the next chunk to events of the previous one, keeping order of events
+     * @param left events of previous chunk, modified
+     * @param right events of next chunk
+     * @return left
+     */
+    private static CollectedEvents mergeCollectedEvents(CollectedEvents left, CollectedEvents right) {
+        left.getRootSportEvents().addAll(right.getRootSportEvents());
+        for (Map.Entry<String, List<SportEvent>> sportEvents : right.getRootSportEventsBySportName().entrySet()) {
+            left.getRootSportEventsBySportName().get(sportEvents.getKey()).addAll(sportEvents.getValue());
+        }
+        mergeGroups(left.getChildrenByParentId(), right.getChildrenByParentId());
+        return left;
     }
 
     /**
-     * Collects to one set all of events with level = 2 or level = 3 and then
-     * create Set of SportEvents with this objects
+     * Append groups of the next chunk to groups of the previous one, keeping order inside every group
+     * @param left groups of previous chunk, modified
+     * @param right groups of next chunk
+     * @return left
      */
-    private void collectChildren() {
-        LocalDateTime start1 = LocalDateTime.now();
-        Set<Child> children = new HashSet<>(level2sports);
-        if (level3sports.size() > 0) {
-            for (Child level2 : level2sports) {
-                for (Child level3 : level3sports) {
-                    if (level3.getParentId().equals(level2.getId())) {
-                        children.add(Child.builder()
-                                .id(level3.getId())
-                                .parentId(level2.getParentId())
-                                .name(level3.getName())
-                                .build()
-                        );
-                    }
-                }
-            }
+    private static <T> Map<Integer, List<T>> mergeGroups(Map<Integer, List<T>> left, Map<Integer, List<T>> right) {
+        for (Map.Entry<Integer, List<T>> group : right.entrySet()) {
+            left.merge(group.getKey(), group.getValue(), (previous, next) -> {
+                previous.addAll(next);
+                return previous;
+            });
         }
+        return left;
+    }
 
-        Set<SportEvent> sportEventChildren = new HashSet<>();
-        int childParentId, eventId;
-        for (Child child : children) {
-            for (SportEvent event : targetSportEvents) {
-                childParentId = child.getParentId();
-                eventId = event.getEventId();
-
-                if (childParentId == eventId) {
-                    sportEventChildren.add(
-                            SportEvent.builder()
-                                    .eventId(child.getId())
-                                    .league(event.getLeague())
-                                    .countryName(event.getCountryName())
-                                    .sportType(event.getSportType())
-                                    .coefficients(child.getCoefficients())
-                                    .sportTeam(event.getSportTeam())
-                                    .name(child.getName())
-                                    .build()
-                    );
-                }
-            }
+    /**
+     * Group customFactors by event id in a single pass
+     * @param context current parse
+     * @param factors all customFactors from JSON
+     * @return event id -> factors of this event
+     */
+    private Map<Integer, List<LineFactor>> groupFactorsByEventId(ParseContext context, List<LineFactor> factors) {
+        Map<Integer, List<LineFactor>> factorsByEventId = new HashMap<>();
+
+        for (LineFactor factor : factors) {
+            if (!context.accepts(factor.getEventId()))
+                continue;
+
+            factorsByEventId
+                    .computeIfAbsent(factor.getEventId(), eventId -> new ArrayList<>())
+                    .add(factor);
+        }
+        return factorsByEventId;
+    }
+
+    /**
+     * Attach events with level > 1 to their root SportEvent. Every parent id is resolved
+     * through childrenByParentId once, so the whole tree is built in linear time for any depth
+     * @param collectedEvents root events and children grouped by parent id, children are consumed while resolving
+     * @return sport name -> root events with their children
+     */
+    Map<String, Set<SportEvent>> collectChildren(CollectedEvents collectedEvents) {
+        long start = System.nanoTime();
+        Map<Integer, List<Child>> childrenByParentId = collectedEvents.getChildrenByParentId();
+
+        for (SportEvent sportEvent : collectedEvents.getRootSportEvents()) {
+            sportEvent.setChildren(resolveChildren(sportEvent.getEventId(), childrenByParentId));
         }
 
-        targetSportEvents.addAll(sportEventChildren);
-        LocalDateTime end1 = LocalDateTime.now();
-        log.info("Total time for adding children: " + ChronoUnit.MILLIS.between(start1, end1));
+        Map<String, Set<SportEvent>> targetSportEvents = new LinkedHashMap<>();
+        for (Map.Entry<String, List<SportEvent>> sportEvents : collectedEvents.getRootSportEventsBySportName().entrySet()) {
+            targetSportEvents.put(sportEvents.getKey(), new HashSet<>(sportEvents.getValue()));
+        }
+
+        metrics.record(ParserMetrics.Stage.CHILD_RESOLUTION, start);
+
+        return targetSportEvents;
+    }
+
+    /**
+     * Collect children of event with all nested levels
+     * @param parentId id of parent event
+     * @param childrenByParentId events with level > 1 grouped by parent id
+     * @return children of event, each child with its own children
+     */
+    private List<Child> resolveChildren(int parentId, Map<Integer, List<Child>> childrenByParentId) {
+        List<Child> children = childrenByParentId.remove(parentId);
+        if (children == null)
+            return Collections.emptyList();
 
+        for (Child child : children) {
+            child.setChildren(resolveChildren(child.getId(), childrenByParentId));
+        }
+        return children;
     }
 
     /**
@@ -197,149 +490,109 @@ public class FonbetLiveParserServiceImpl implements FonbetLiveParserService {
      * @param factors target customFactors
      * @return new SportEvent Object
      */
-    private SportEvent buildSportEvent(JsonObject sportObject, JsonObject eventObject, Set<JsonObject> factors) {
-        List<String> eventMainInfo = getEventMainInfo(sportObject);
+    private SportEvent buildSportEvent(LineSport sportObject, LineEvent eventObject, List<LineFactor> factors) {
+        SportNameClassifier.SegmentInfo segmentInfo = classifier.classify(sportObject);
 
         return  SportEvent.builder()
-                .eventId(eventObject.get("id").getAsInt())
-                .name(sportObject.get("name").getAsString())
-                .sportTeam(SportTeam.builder()
-                        .team1(eventObject.get("team1").getAsString())
-                        .team2(eventObject.get("team2").getAsString())
-                        .build())
-                .sportType(eventMainInfo.get(0))
-                .countryName(eventMainInfo.get(1))
-                .league(eventMainInfo.get(2))
+                .eventId(eventObject.getId())
+                .name(segmentInfo.getSegmentName())
+                .sportTeam(dictionary != null
+                        ? dictionary.team(eventObject.getTeam1(), eventObject.getTeam2())
+                        : SportTeam.builder()
+                                .team1(eventObject.getTeam1())
+                                .team2(eventObject.getTeam2())
+                                .build())
+                .sportType(segmentInfo.getSportType())
+                .countryName(segmentInfo.getCountryName())
+                .league(segmentInfo.getLeague())
                 .coefficients(collectCoefficientsForEvent(factors))
                 .build();
     }
 
 
     /**
-     * Get from name of event sportType, country and league
-     * @param sportObject target object from sports
-     * @return List of 3 events, where
-     * 0 -> sport Name
-     * 1 -> country
-     * 2 -> league
+     * Collect coefficient, doubleChance, handicap and totals for current event
+     * @return Coefficients for domain
      */
-    private List<String> getEventMainInfo(JsonObject sportObject) {
-        List<String> res = new ArrayList<>();
-        String mainLine = sportObject.get("name").getAsString();
-
-        if (sportName.equals("Футбол")) {
-            Pattern pattern = Pattern.compile(
-                    "^(?<sportType>(Футбол. До 20 лет)?|(Футбол. Жен)?|(Футбол)?).\\s" +
-                            "(?<countryName>(Товарищеские матчи)?(FIFA 21. eSport Battle)?" +
-                            "|(FIFA 21. Лига Про. [а-яА-ЯёЁ]+)?|(FIFA 21)?|(COSAFA Cup)?|(.+?)).\\s" +
-                            "(?<league>.*)$");
-
-            Matcher matcher = pattern.matcher(mainLine);
-
-            if (matcher.find()) {
-                res.add(matcher.group("sportType"));
-                res.add(matcher.group("countryName"));
-                res.add(matcher.group("league"));
-            }
+    private Coefficients collectCoefficientsForEvent(List<LineFactor> targetFactors) {
+        Coefficients coefficients = new Coefficients();
 
-        } else {
-            res.add(mainLine);
-            res.add(mainLine);
-            res.add(mainLine);
+        for (LineFactor factor : targetFactors) {
+            coefficients.set(factor.getFactorId(), factor.getValue());
         }
-        return res;
+
+        return coefficients;
     }
 
     /**
-     * Collect coefficient, doubleChance, handicap and totals for current event
-     * @return Coefficients for domain
+     * Collect segments of requested sports
+     * @param context current parse
+     * @param sports sports of all types
+     * @return sport name -> segments of this sport, for every requested sport
      */
-    private Coefficients collectCoefficientsForEvent(Set<JsonObject> targetFactors) {
-        int factorNumber;
-        Coefficients coefficients = new Coefficients();
+    Map<String, List<LineSport>> collectSportsByName(ParseContext context, List<LineSport> sports) {
+        long start = System.nanoTime();
+        Map<String, List<LineSport>> segmentsBySportName = new LinkedHashMap<>();
+        for (String sportName : context.getSportNames()) {
+            segmentsBySportName.put(sportName, new ArrayList<>());
+        }
 
-        Map<Integer, String> coefficientDict = new HashMap<>();
-        coefficientDict.put(921, "1");
-        coefficientDict.put(922, "X");
-        coefficientDict.put(923, "2");
-
-        Map<Integer, String> doubleChanceDict = new HashMap<>();
-        doubleChanceDict.put(924, "1X");
-        doubleChanceDict.put(1571, "12");
-        doubleChanceDict.put(925, "X2");
-
-        Map<Integer, String> handicapDict = new HashMap<>();
-        handicapDict.put(927, "Фора 1");
-        handicapDict.put(928, "Фора 2");
-
-        Map<Integer, String> totalsDict = new HashMap<>();
-        totalsDict.put(930, "Тотал Б");
-        totalsDict.put(931, "Тотал М");
-
-        for (JsonObject factor : targetFactors) {
-            factorNumber = factor.get("f").getAsInt();
-
-            if (coefficientDict.containsKey(factorNumber)) {
-                coefficients.getCoefficient().put(coefficientDict.get(factorNumber), factor.get("v").getAsFloat());
-            } else if (doubleChanceDict.containsKey(factorNumber)) {
-                coefficients.getDoubleChance().put(doubleChanceDict.get(factorNumber), factor.get("v").getAsFloat());
-            } else if (handicapDict.containsKey(factorNumber)) {
-                coefficients.getHandicap().put(handicapDict.get(factorNumber), factor.get("v").getAsFloat());
-            } else if (totalsDict.containsKey(factorNumber)) {
-                coefficients.getTotals().put(totalsDict.get(factorNumber), factor.get("v").getAsFloat());
+        for (LineSport sport : sports) {
+            for (Map.Entry<String, List<LineSport>> segments : segmentsBySportName.entrySet()) {
+                if (classifier.matches(sport, segments.getKey())) {
+                    segments.getValue().add(sport);
+                }
             }
         }
-
-        return coefficients;
+        metrics.record(ParserMetrics.Stage.SPORT_FILTER, start);
+        return segmentsBySportName;
     }
 
     /**
-     * Load JSON from fonbet in text
-     * @return json
-     * @throws IOException error
+     * Events of requested sports before children are attached to their roots
      */
-    private JsonObject getCurrentLine() throws IOException {
-        // TODO: add URL_STRING to application.properties
-        LocalDateTime start = LocalDateTime.now();
-        HttpComponentsClientHttpRequestFactory clientHttpRequestFactory = new HttpComponentsClientHttpRequestFactory(
-                HttpClientBuilder.create().build());
-        String url = "https://line32.bkfon-resources.com/live/currentLine/ru?scopeMarket=1600&sysId=1";
-        RestTemplate restTemplate = new RestTemplate(clientHttpRequestFactory);
-
-        String response = restTemplate.getForObject(url, String.class);
-
-        LocalDateTime end = LocalDateTime.now();
-        log.info("Total time for download currentLine: " + ChronoUnit.MILLIS.between(start, end));
-
-        if (response != null)
-            return JsonParser.parseString(response).getAsJsonObject();
-        throw new IOException("No JSON");
+    @Value
+    static class CollectedEvents {
+        /** Every root event once */
+        List<SportEvent> rootSportEvents;
+        Map<String, List<SportEvent>> rootSportEventsBySportName;
+        Map<Integer, List<Child>> childrenByParentId;
     }
 
     /**
-     * Collect sports of current type
-     * @param sports sports of all types
+     * Range of a list split in halves until it is not longer than chunkSize, halves are computed
+     * in parallel and merged in order
      */
-    private void collectSportsByName(JsonArray sports) {
-        sportWithCurrentName = new HashSet<>();
-        Matcher matcher;
-        JsonObject sportObject;
-        Pattern pattern = Pattern.compile("(" + sportName + ").*");
-
-        for (JsonElement sport : sports) {
-
-            sportObject = sport.getAsJsonObject();
-
-            if (sportObject.get("kind").getAsString().equals("segment")) {
-
-                matcher = pattern.matcher(sportObject.get("name").toString());
-
-                if (matcher.find()) {
-                    sportWithCurrentName.add(sportObject);
-                }
-
-            }
+    @RequiredArgsConstructor
+    private static class ChunkTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final BiFunction<Integer, Integer, R> chunk;
+        private final BinaryOperator<R> merge;
+
+        @Override
+        protected R compute() {
+            if (to - from <= chunkSize)
+                return chunk.apply(from, to);
+
+            int middle = (from + to) >>> 1;
+            ChunkTask<R> right = new ChunkTask<>(middle, to, chunkSize, chunk, merge);
+            right.fork();
+            R left = new ChunkTask<>(from, middle, chunkSize, chunk, merge).compute();
+            return merge.apply(left, right.join());
         }
     }
 
+    /**
+     * Result of deserialize for one sport and snapshot version
+     */
+    @Value
+    private static class ParsedSport {
+        long version;
+        Map<Integer, SportEvent> sportEventsById;
+        Set<SportEvent> sportEvents;
+    }
 }
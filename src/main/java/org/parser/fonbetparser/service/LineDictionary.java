@@ -0,0 +1,58 @@
+package org.parser.fonbetparser.service;
+
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.SportTeam;
+import org.parser.fonbetparser.line.Interner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Canonical names and teams of lines, shared by polls of all sources, so events of one snapshot
+ * reference strings and SportTeams of the previous ones instead of equal copies.
+ * Values not seen for fonbet.live.dictionary-expire-after are dropped
+ */
+@Component
+public class LineDictionary {
+
+    /** Interval of sweeps of unused values, ms */
+    static final long SWEEP_INTERVAL = 60_000;
+
+    private final Interner<String> strings;
+    private final Interner<SportTeam> teams;
+
+    public LineDictionary(FonbetLiveProperties properties) {
+        int idleSweeps = (int) Math.max(1, properties.getDictionaryExpireAfter().toMillis() / SWEEP_INTERVAL);
+        strings = new Interner<>(idleSweeps);
+        teams = new Interner<>(idleSweeps);
+    }
+
+    /**
+     * @return names of sports, events and teams, used by CurrentLineReader
+     */
+    public Interner<String> getStrings() {
+        return strings;
+    }
+
+    /**
+     * Shared team, must not be modified
+     * @param team1 canonical name of the first team
+     * @param team2 canonical name of the second team
+     * @return canonical SportTeam with these names
+     */
+    public SportTeam team(String team1, String team2) {
+        return teams.intern(SportTeam.builder()
+                .team1(team1)
+                .team2(team2)
+                .build());
+    }
+
+    @Scheduled(fixedDelay = SWEEP_INTERVAL)
+    public void sweep() {
+        strings.advance();
+        teams.advance();
+    }
+
+    int size() {
+        return strings.size() + teams.size();
+    }
+}
@@ -0,0 +1,122 @@
+package org.parser.fonbetparser.service;
+
+import lombok.Value;
+import org.parser.fonbetparser.domain.LineSourceStatus;
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest lines of all sources, by bookmaker, line type and sport. A successful poll replaces all sports
+ * of its source at once, a failed one keeps them. Safe for concurrent updates by different sources
+ */
+@Component
+public class LineEventStore {
+
+    private final Map<SourceKey, Map<String, LiveLine>> lines = new ConcurrentHashMap<>();
+    private final Map<String, LineSourceStatus> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * Replace line of source
+     * @param source polled source
+     * @param liveLines sport name -> events of sport
+     */
+    public void update(LineSource source, Map<String, LiveLine> liveLines) {
+        int events = 0;
+        for (LiveLine liveLine : liveLines.values()) {
+            events += liveLine.getSportEvents().size();
+        }
+        lines.put(new SourceKey(source.getBookmaker(), source.getLineType()),
+                Collections.unmodifiableMap(new LinkedHashMap<>(liveLines)));
+
+        int sports = liveLines.size();
+        int sportEvents = events;
+        statuses.compute(source.getName(), (name, previous) -> status(source, previous)
+                .polls(previous == null ? 1 : previous.getPolls() + 1)
+                .consecutiveFailures(0)
+                .lastSuccess(LocalDateTime.now())
+                .lastError(null)
+                .sports(sports)
+                .events(sportEvents)
+                .build());
+    }
+
+    /**
+     * Count failed poll of source, its line stays as it was
+     * @param source polled source
+     * @param e error of poll
+     */
+    public void failed(LineSource source, Exception e) {
+        statuses.compute(source.getName(), (name, previous) -> status(source, previous)
+                .polls(previous == null ? 1 : previous.getPolls() + 1)
+                .failures(previous == null ? 1 : previous.getFailures() + 1)
+                .consecutiveFailures(previous == null ? 1 : previous.getConsecutiveFailures() + 1)
+                .lastError(e.toString())
+                .build());
+    }
+
+    /**
+     * @param bookmaker name of bookmaker
+     * @param lineType live or prematch
+     * @param sportName name of sport
+     * @return events of sport, null if no source has the sport
+     */
+    public LiveLine get(String bookmaker, LineType lineType, String sportName) {
+        Map<String, LiveLine> sports = lines.get(new SourceKey(bookmaker, lineType));
+        return sports == null ? null : sports.get(sportName);
+    }
+
+    /**
+     * @param sportName name of sport
+     * @return events of sport of every bookmaker and line type having it
+     */
+    public List<LiveLine> getSportEvents(String sportName) {
+        List<LiveLine> liveLines = new ArrayList<>();
+        for (Map<String, LiveLine> sports : lines.values()) {
+            LiveLine liveLine = sports.get(sportName);
+            if (liveLine != null)
+                liveLines.add(liveLine);
+        }
+        return liveLines;
+    }
+
+    /**
+     * @return lines of all sources, every element maps sport name -> events of sport of one source
+     */
+    public Collection<Map<String, LiveLine>> getLines() {
+        return Collections.unmodifiableCollection(lines.values());
+    }
+
+    /**
+     * @return health of every source polled at least once, ordered by name
+     */
+    public List<LineSourceStatus> getStatuses() {
+        List<LineSourceStatus> result = new ArrayList<>(statuses.values());
+        result.sort(Comparator.comparing(LineSourceStatus::getName));
+        return result;
+    }
+
+    private static LineSourceStatus.LineSourceStatusBuilder status(LineSource source, LineSourceStatus previous) {
+        LineSourceStatus.LineSourceStatusBuilder status = LineSourceStatus.builder()
+                .name(source.getName())
+                .bookmaker(source.getBookmaker())
+                .lineType(source.getLineType());
+        if (previous != null) {
+            status.failures(previous.getFailures())
+                    .lastSuccess(previous.getLastSuccess())
+                    .sports(previous.getSports())
+                    .events(previous.getEvents());
+        }
+        return status;
+    }
+
+    @Value
+    private static class SourceKey {
+        String bookmaker;
+        LineType lineType;
+    }
+}
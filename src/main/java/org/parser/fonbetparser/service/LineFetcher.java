@@ -0,0 +1,26 @@
+package org.parser.fonbetparser.service;
+
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Source of currentLine polled by LineSnapshotPoller: fonbet itself or a recorded log
+ */
+public interface LineFetcher {
+
+    /**
+     * Get the next currentLine
+     * @param sportFilter sports to keep, other sports with their events are skipped while reading
+     * @return currentLine
+     * @throws IOException if line can't be got
+     */
+    CurrentLine fetch(Predicate<LineSport> sportFilter) throws IOException;
+
+    /**
+     * @return line returned by the last successful fetch, null if there was none
+     */
+    CurrentLine getLastLine();
+}
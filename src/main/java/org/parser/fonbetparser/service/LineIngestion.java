@@ -0,0 +1,68 @@
+package org.parser.fonbetparser.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls every LineSource on its own thread with its own interval and puts results into LineEventStore.
+ * A failing or slow source delays only itself
+ */
+@Component
+@Slf4j
+public class LineIngestion {
+
+    private final List<LineSource> sources;
+    private final LineEventStore store;
+    private final List<ScheduledExecutorService> executors = new ArrayList<>();
+
+    public LineIngestion(List<LineSource> sources, LineEventStore store) {
+        this.sources = sources;
+        this.store = store;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        for (LineSource source : sources) {
+            CustomizableThreadFactory threadFactory =
+                    new CustomizableThreadFactory("line-source-" + source.getName() + "-");
+            threadFactory.setDaemon(true);
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            executor.scheduleWithFixedDelay(() -> poll(source), 0,
+                    source.getPollInterval().toMillis(), TimeUnit.MILLISECONDS);
+            executors.add(executor);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        for (ScheduledExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+        executors.clear();
+    }
+
+    /**
+     * Poll source once. Errors are kept in status of source and don't cancel its schedule
+     * @param source polled source
+     */
+    void poll(LineSource source) {
+        try {
+            Map<String, LiveLine> liveLines = source.poll();
+            store.update(source, liveLines);
+        } catch (Exception e) {
+            log.error("Error while polling line source " + source.getName() + " " + e);
+            store.failed(source, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.parser.fonbetparser.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineLogWriter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Appends every downloaded currentLine to the log in fonbet.live.record-dir, for replay
+ * by ReplayLineFetcher. Does nothing if the directory isn't set
+ */
+@Component
+@Slf4j
+public class LineLogRecorder {
+
+    /** null if recording is off */
+    private final LineLogWriter writer;
+    private long lastPacketVersion;
+
+    public LineLogRecorder(FonbetLiveProperties properties) {
+        writer = StringUtils.hasText(properties.getRecordDir())
+                ? new LineLogWriter(Paths.get(properties.getRecordDir()), properties.getRecordSegmentSize().toBytes())
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Append raw payload of line, unless it has the packetVersion of the previous one.
+     * An error of write is logged and doesn't fail the download
+     * @param line line read from payload
+     * @param json raw payload
+     */
+    public synchronized void record(CurrentLine line, byte[] json) {
+        if (writer == null || line.getPacketVersion() != 0 && line.getPacketVersion() == lastPacketVersion)
+            return;
+
+        try {
+            writer.append(System.currentTimeMillis(), line.getPacketVersion(), json);
+            lastPacketVersion = line.getPacketVersion();
+        } catch (IOException e) {
+            log.error("Error while recording line " + e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (writer != null)
+            writer.close();
+    }
+}
@@ -0,0 +1,101 @@
+package org.parser.fonbetparser.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineDelta;
+import org.parser.fonbetparser.line.LineDiff;
+import org.parser.fonbetparser.line.LineSnapshot;
+import org.parser.fonbetparser.line.LineSport;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Downloads currentLine once per fonbet.live.poll-interval and keeps the latest snapshot
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LineSnapshotPoller {
+
+    /** Same filter on every download, so fetcher can revalidate the previous response */
+    private static final Predicate<LineSport> ALL_SPORTS = sport -> true;
+
+    private final LineFetcher fetcher;
+    private final AtomicReference<LineSnapshot> snapshot = new AtomicReference<>();
+    private final Sinks.Many<LineSnapshot> updates = Sinks.many().multicast().directBestEffort();
+
+    @Scheduled(fixedDelayString = "${fonbet.live.poll-interval:2000}")
+    public void poll() {
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            log.error("Error while getting JSON from server " + e);
+        }
+    }
+
+    /**
+     * Snapshots with new versions, published right after they are downloaded
+     * @return hot stream of snapshots
+     */
+    public Flux<LineSnapshot> updates() {
+        return updates.asFlux();
+    }
+
+    int updatesSubscriberCount() {
+        return updates.currentSubscriberCount();
+    }
+
+    /**
+     * Latest snapshot. If nothing was downloaded yet, downloads it in the calling thread
+     * @return latest snapshot
+     * @throws IOException if first download failed
+     */
+    public LineSnapshot getSnapshot() throws IOException {
+        LineSnapshot current = snapshot.get();
+        if (current != null)
+            return current;
+
+        synchronized (this) {
+            current = snapshot.get();
+            return current != null ? current : refresh();
+        }
+    }
+
+    /**
+     * Download currentLine and publish it as a new snapshot. If content of currentLine
+     * didn't change, the new snapshot keeps version and line of the previous one
+     * @return new snapshot
+     * @throws IOException error
+     */
+    public synchronized LineSnapshot refresh() throws IOException {
+        LocalDateTime start = LocalDateTime.now();
+        CurrentLine line = fetcher.fetch(ALL_SPORTS);
+        LocalDateTime end = LocalDateTime.now();
+
+        LineSnapshot previous = snapshot.get();
+        LineSnapshot next;
+        if (previous == null) {
+            next = new LineSnapshot(1, start, end, line, null);
+        } else if (line == previous.getLine()
+                || line.getPacketVersion() != 0 && line.getPacketVersion() == previous.getLine().getPacketVersion()) {
+            next = new LineSnapshot(previous.getVersion(), start, end, previous.getLine(), previous.getDelta());
+        } else {
+            LineDelta delta = LineDiff.between(previous.getLine(), line, previous.getVersion(), previous.getVersion() + 1);
+            next = delta.isEmpty()
+                    ? new LineSnapshot(previous.getVersion(), start, end, line, previous.getDelta())
+                    : new LineSnapshot(delta.getToVersion(), start, end, line, delta);
+        }
+        snapshot.set(next);
+        if (previous == null || previous.getVersion() != next.getVersion())
+            updates.tryEmitNext(next);
+        return next;
+    }
+}
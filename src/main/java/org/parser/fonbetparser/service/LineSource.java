@@ -0,0 +1,36 @@
+package org.parser.fonbetparser.service;
+
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.domain.LiveLine;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Line of one bookmaker and line type. Every source is polled by LineIngestion on its own thread
+ * with its own interval, results of all sources are kept in LineEventStore
+ */
+public interface LineSource {
+
+    /**
+     * @return unique name of source, e.g. fonbet-live
+     */
+    String getName();
+
+    String getBookmaker();
+
+    LineType getLineType();
+
+    /**
+     * @return delay between the end of one poll and the start of the next one
+     */
+    Duration getPollInterval();
+
+    /**
+     * Load the current line. Called by one thread at a time
+     * @return sport name -> events of sport, bookmaker and line type of every LiveLine are those of source
+     * @throws IOException if line can't be loaded, the previous result of source is kept
+     */
+    Map<String, LiveLine> poll() throws IOException;
+}
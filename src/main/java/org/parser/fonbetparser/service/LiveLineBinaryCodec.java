@@ -0,0 +1,315 @@
+package org.parser.fonbetparser.service;
+
+import org.parser.fonbetparser.domain.*;
+import org.springframework.http.MediaType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Compact binary form of LiveLine for internal consumers, served for Accept: application/x-fonbet-line.
+ * Every string is written once to a table in front of the line and referenced by index, coefficients
+ * are pairs of fonbet factor id and float instead of maps with market labels.
+ * <pre>
+ * header:       "FBL" format version (2)
+ * strings:      count, (utf-8 length, bytes)*
+ * line:         bookmaker, lineType, startTime, endTime, snapshotVersion, stale, event count, event*
+ * event:        eventId, sportType, countryName, league, name, sportTeam, coefficients, children
+ * sportTeam:    0 for null, or 1, team1, team2
+ * child:        id, parentId, name, coefficients, children
+ * children:     0 for null, or count + 1, child*
+ * coefficients: 0 for null, or count + 1, (factor id, float)*
+ * </pre>
+ * Counts, ids and string references are unsigned varints. Ids and references are written as value + 1,
+ * 0 stands for null. stale is one byte, floats are 4 bytes big-endian, snapshotVersion and times are 8 bytes,
+ * times are epoch nanos of the local date-time taken as UTC, Long.MIN_VALUE for null
+ */
+public final class LiveLineBinaryCodec {
+
+    public static final MediaType MEDIA_TYPE = new MediaType("application", "x-fonbet-line");
+
+    static final byte[] MAGIC = {'F', 'B', 'L'};
+    static final byte VERSION = 2;
+
+    private static final Factor[] FACTORS = Factor.values();
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private LiveLineBinaryCodec() {
+    }
+
+    /**
+     * @param liveLine events of sport
+     * @return binary form of liveLine
+     */
+    public static byte[] encode(LiveLine liveLine) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Output body = new Output(256 + liveLine.getSportEvents().size() * 64);
+
+        body.writeString(strings, liveLine.getBookmaker());
+        body.writeString(strings, liveLine.getLineType() == null ? null : liveLine.getLineType().name());
+        body.writeTime(liveLine.getStartTime());
+        body.writeTime(liveLine.getEndTime());
+        body.writeLong(liveLine.getSnapshotVersion());
+        body.writeByte(liveLine.isStale() ? 1 : 0);
+        body.writeVarint(liveLine.getSportEvents().size());
+        for (SportEvent sportEvent : liveLine.getSportEvents()) {
+            body.writeId(sportEvent.getEventId());
+            body.writeString(strings, sportEvent.getSportType());
+            body.writeString(strings, sportEvent.getCountryName());
+            body.writeString(strings, sportEvent.getLeague());
+            body.writeString(strings, sportEvent.getName());
+            if (sportEvent.getSportTeam() == null) {
+                body.writeVarint(0);
+            } else {
+                body.writeVarint(1);
+                body.writeString(strings, sportEvent.getSportTeam().getTeam1());
+                body.writeString(strings, sportEvent.getSportTeam().getTeam2());
+            }
+            body.writeCoefficients(sportEvent.getCoefficients());
+            body.writeChildren(strings, sportEvent.getChildren());
+        }
+
+        Output out = new Output(body.size + strings.size() * 24 + 16);
+        out.writeBytes(MAGIC, MAGIC.length);
+        out.writeByte(VERSION);
+        out.writeVarint(strings.size());
+        for (String string : strings.keySet()) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(utf8.length);
+            out.writeBytes(utf8, utf8.length);
+        }
+        out.writeBytes(body.bytes, body.size);
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    /**
+     * @param bytes result of encode
+     * @return liveLine equal to the encoded one, events in encoded order
+     * @throws IllegalArgumentException if bytes are not a LiveLine of supported version
+     */
+    public static LiveLine decode(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            for (byte b : MAGIC) {
+                if (in.get() != b)
+                    throw new IllegalArgumentException("Not a binary LiveLine");
+            }
+            byte version = in.get();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported version " + version + " of binary LiveLine");
+
+            String[] strings = new String[(int) readVarint(in)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] utf8 = new byte[(int) readVarint(in)];
+                in.get(utf8);
+                strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+
+            LiveLine.LiveLineBuilder liveLine = LiveLine.builder()
+                    .bookmaker(readString(in, strings));
+            String lineType = readString(in, strings);
+            liveLine.lineType(lineType == null ? null : LineType.valueOf(lineType))
+                    .startTime(readTime(in))
+                    .endTime(readTime(in))
+                    .snapshotVersion(in.getLong())
+                    .stale(in.get() != 0);
+
+            int events = (int) readVarint(in);
+            Set<SportEvent> sportEvents = new LinkedHashSet<>(events * 2);
+            for (int i = 0; i < events; i++) {
+                SportEvent.SportEventBuilder sportEvent = SportEvent.builder()
+                        .eventId(readId(in))
+                        .sportType(readString(in, strings))
+                        .countryName(readString(in, strings))
+                        .league(readString(in, strings))
+                        .name(readString(in, strings));
+                if (readVarint(in) != 0) {
+                    sportEvent.sportTeam(SportTeam.builder()
+                            .team1(readString(in, strings))
+                            .team2(readString(in, strings))
+                            .build());
+                }
+                sportEvents.add(sportEvent
+                        .coefficients(readCoefficients(in))
+                        .children(readChildren(in, strings))
+                        .build());
+            }
+            return liveLine.sportEvents(sportEvents).build();
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated binary LiveLine", e);
+        }
+    }
+
+    private static List<Child> readChildren(ByteBuffer in, String[] strings) {
+        long count = readVarint(in);
+        if (count == 0)
+            return null;
+
+        List<Child> children = new ArrayList<>((int) count - 1);
+        for (int i = 1; i < count; i++) {
+            children.add(Child.builder()
+                    .id(readId(in))
+                    .parentId(readId(in))
+                    .name(readString(in, strings))
+                    .coefficients(readCoefficients(in))
+                    .children(readChildren(in, strings))
+                    .build());
+        }
+        return children;
+    }
+
+    private static Coefficients readCoefficients(ByteBuffer in) {
+        long count = readVarint(in);
+        if (count == 0)
+            return null;
+
+        Coefficients coefficients = new Coefficients();
+        for (int i = 1; i < count; i++) {
+            coefficients.set((int) readVarint(in), in.getFloat());
+        }
+        return coefficients;
+    }
+
+    private static String readString(ByteBuffer in, String[] strings) {
+        int ref = (int) readVarint(in);
+        return ref == 0 ? null : strings[ref - 1];
+    }
+
+    private static Integer readId(ByteBuffer in) {
+        long id = readVarint(in);
+        return id == 0 ? null : (int) (id - 1);
+    }
+
+    private static LocalDateTime readTime(ByteBuffer in) {
+        long nanos = in.getLong();
+        return nanos == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(nanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint in binary LiveLine");
+    }
+
+    /**
+     * Growable big-endian buffer
+     */
+    private static final class Output {
+        private byte[] bytes;
+        private int size;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] b, int length) {
+            ensure(length);
+            System.arraycopy(b, 0, bytes, size, length);
+            size += length;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeFloat(float value) {
+            ensure(4);
+            int bits = Float.floatToIntBits(value);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (bits >>> shift);
+            }
+        }
+
+        void writeId(Integer id) {
+            writeVarint(id == null ? 0 : (id & 0xffffffffL) + 1);
+        }
+
+        void writeTime(LocalDateTime time) {
+            writeLong(time == null
+                    ? Long.MIN_VALUE
+                    : time.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + time.getNano());
+        }
+
+        /**
+         * Write reference to string, adding it to the table on first use
+         */
+        void writeString(Map<String, Integer> strings, String string) {
+            if (string == null) {
+                writeVarint(0);
+                return;
+            }
+            Integer ref = strings.get(string);
+            if (ref == null) {
+                ref = strings.size() + 1;
+                strings.put(string, ref);
+            }
+            writeVarint(ref);
+        }
+
+        void writeCoefficients(Coefficients coefficients) {
+            if (coefficients == null) {
+                writeVarint(0);
+                return;
+            }
+            int count = 0;
+            for (Factor factor : FACTORS) {
+                if (coefficients.has(factor))
+                    count++;
+            }
+            writeVarint(count + 1);
+            for (Factor factor : FACTORS) {
+                if (coefficients.has(factor)) {
+                    writeVarint(factor.getId());
+                    writeFloat(coefficients.get(factor));
+                }
+            }
+        }
+
+        void writeChildren(Map<String, Integer> strings, List<Child> children) {
+            if (children == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(children.size() + 1);
+            for (Child child : children) {
+                writeId(child.getId());
+                writeId(child.getParentId());
+                writeString(strings, child.getName());
+                writeCoefficients(child.getCoefficients());
+                writeChildren(strings, child.getChildren());
+            }
+        }
+
+        private void ensure(int length) {
+            if (size + length > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+        }
+    }
+}
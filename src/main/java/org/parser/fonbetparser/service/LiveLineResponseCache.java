@@ -0,0 +1,203 @@
+package org.parser.fonbetparser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * LiveLine per sport and format, serialized and gzipped once per snapshot version and stale flag,
+ * both encodings are kept. Holds the latest version of every sport and format, least recently used ones are evicted
+ * when the total size exceeds fonbet.live.response-cache-size.
+ * Version is kept while fonbet answers 304 Not Modified, so startTime and endTime of a cached body are the first
+ * download of its version, not the latest one
+ */
+@Component
+public class LiveLineResponseCache {
+
+    /**
+     * Representations of LiveLine
+     */
+    public enum Format {
+        JSON,
+        /** LiveLineBinaryCodec */
+        BINARY
+    }
+
+    /** Serializations of one sport are done under one of these locks, so a version is serialized once */
+    private static final int LOCK_STRIPES = 64;
+
+    private final ObjectMapper objectMapper;
+    private final ParserMetrics metrics;
+    private final long maxBytes;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final LinkedHashMap<Key, SerializedLiveLine> responses = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public LiveLineResponseCache(ObjectMapper objectMapper, FonbetLiveProperties properties, ParserMetrics metrics) {
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.maxBytes = properties.getResponseCacheSize().toBytes();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * JSON of liveLine of sport
+     * @param sportName name of sport
+     * @param liveLine events of sport, built from snapshot
+     * @return gzipped JSON, cached one if it was built from the same snapshot version
+     */
+    public SerializedLiveLine get(String sportName, LiveLine liveLine) {
+        return get(sportName, liveLine, Format.JSON);
+    }
+
+    /**
+     * Serialized liveLine of sport
+     * @param sportName name of sport
+     * @param liveLine events of sport, built from snapshot
+     * @param format representation
+     * @return gzipped representation, cached one if it was built from the same snapshot version
+     */
+    public SerializedLiveLine get(String sportName, LiveLine liveLine, Format format) {
+        if (liveLine.getEndTime() == null)
+            return serialize(liveLine, format);
+
+        Key key = new Key(sportName, format);
+        SerializedLiveLine cached = lookup(key, liveLine);
+        if (cached != null)
+            return cached;
+
+        synchronized (locks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES]) {
+            cached = lookup(key, liveLine);
+            if (cached != null)
+                return cached;
+
+            SerializedLiveLine serialized = serialize(liveLine, format);
+            store(key, serialized);
+            return serialized;
+        }
+    }
+
+    long getTotalBytes() {
+        synchronized (responses) {
+            return totalBytes;
+        }
+    }
+
+    private SerializedLiveLine lookup(Key key, LiveLine liveLine) {
+        synchronized (responses) {
+            SerializedLiveLine cached = responses.get(key);
+            return cached != null && cached.getVersion() == liveLine.getSnapshotVersion()
+                    && cached.isStale() == liveLine.isStale() ? cached : null;
+        }
+    }
+
+    private void store(Key key, SerializedLiveLine serialized) {
+        long size = serialized.getSize();
+        if (size > maxBytes)
+            return;
+
+        synchronized (responses) {
+            SerializedLiveLine previous = responses.put(key, serialized);
+            if (previous != null)
+                totalBytes -= previous.getSize();
+            totalBytes += size;
+
+            Iterator<Map.Entry<Key, SerializedLiveLine>> eldest = responses.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().getValue().getSize();
+                eldest.remove();
+            }
+        }
+    }
+
+    private SerializedLiveLine serialize(LiveLine liveLine, Format format) {
+        long start = System.nanoTime();
+        try {
+            byte[] body = format == Format.BINARY
+                    ? LiveLineBinaryCodec.encode(liveLine)
+                    : objectMapper.writeValueAsBytes(liveLine);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+
+            ByteArrayOutputStream gzipBody = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(gzipBody)) {
+                gzip.write(body);
+            }
+            String tag = liveLine.getSnapshotVersion() + "-" + Long.toHexString(crc.getValue())
+                    + (format == Format.BINARY ? "-bin" : "");
+            metrics.record(ParserMetrics.Stage.SERIALIZATION, start);
+            return new SerializedLiveLine(liveLine.getSnapshotVersion(), liveLine.isStale(), tag,
+                    body, gzipBody.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Value
+    private static class Key {
+        String sportName;
+        Format format;
+    }
+
+    /**
+     * Serialized LiveLine, as is and as gzip
+     */
+    @Value
+    public static class SerializedLiveLine {
+        long version;
+        /** Version is the same while it turns stale, the body is not */
+        boolean stale;
+        /** ETag value without quotes, same for gzip and identity encodings apart from suffix */
+        String tag;
+        /** Body for clients not accepting gzip */
+        byte[] body;
+        byte[] gzipBody;
+
+        /**
+         * @return bytes held by both encodings
+         */
+        public long getSize() {
+            return (long) body.length + gzipBody.length;
+        }
+
+        /**
+         * @param gzip true for gzip encoded body
+         * @return strong ETag of representation
+         */
+        public String getETag(boolean gzip) {
+            return "\"" + tag + (gzip ? "-gzip\"" : "\"");
+        }
+
+        /**
+         * @param ifNoneMatch value of If-None-Match header, may be null
+         * @return true if client already has this representation in any encoding
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null)
+                return false;
+
+            for (String eTag : ifNoneMatch.split(",")) {
+                String value = eTag.trim();
+                if (value.startsWith("W/"))
+                    value = value.substring(2);
+                if (value.equals("*") || value.equals(getETag(false)) || value.equals(getETag(true)))
+                    return true;
+            }
+            return false;
+        }
+    }
+}
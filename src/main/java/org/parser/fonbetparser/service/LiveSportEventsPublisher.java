@@ -0,0 +1,217 @@
+package org.parser.fonbetparser.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.LiveLineChanges;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pushes changed events of a sport to subscribers. Changes are computed and serialized
+ * once per sport and snapshot version, all subscribers of the sport get the same payload.
+ * Only the first changes of a subscriber whose snapshot isn't the one shared changes start from
+ * are computed against its own snapshot
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LiveSportEventsPublisher {
+
+    static final String SNAPSHOT_EVENT = "snapshot";
+    static final String CHANGES_EVENT = "changes";
+
+    /** Updates buffered for slow subscriber before it is disconnected */
+    private static final int SUBSCRIBER_BUFFER = 32;
+    private static final int MAX_SHARED_SPORTS = 256;
+
+    private final FonbetLiveParserService parserService;
+    private final LineSnapshotPoller snapshotPoller;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentMap<String, Flux<SportChanges>> changesBySport = new ConcurrentHashMap<>();
+
+    /**
+     * Stream of events of one sport. First message contains all events of sport,
+     * next ones only events changed by new snapshots and ids of removed events.
+     * A subscriber that falls behind by more than SUBSCRIBER_BUFFER updates is disconnected
+     * and gets a full snapshot again on reconnect
+     * @param sportName name of sport
+     * @return server-sent events
+     */
+    public Flux<ServerSentEvent<String>> subscribe(String sportName) {
+        Flux<SportChanges> changes = changesBySport.size() < MAX_SHARED_SPORTS
+                ? changesBySport.computeIfAbsent(sportName, this::sportChanges)
+                : sportChanges(sportName);
+
+        return Mono.fromCallable(() -> parserService.getTargetSportEvents(sportName))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(liveLine -> {
+                    Subscriber subscriber = new Subscriber(sportName, SportState.of(liveLine));
+                    return Flux.concat(
+                            Mono.just(toEvent(SNAPSHOT_EVENT, sportName, liveLine.getSnapshotVersion(),
+                                    liveLine.getSportEvents(), Collections.emptySet())),
+                            changes.<ServerSentEvent<String>>handle((sportChanges, sink) -> {
+                                ServerSentEvent<String> event = subscriber.next(sportChanges);
+                                if (event != null)
+                                    sink.next(event);
+                            }));
+                })
+                .onBackpressureBuffer(SUBSCRIBER_BUFFER, BufferOverflowStrategy.ERROR);
+    }
+
+    /**
+     * Shared stream of changes of one sport, connected while it has subscribers.
+     * Line is read on boundedElastic, as reading it may download the snapshot
+     */
+    private Flux<SportChanges> sportChanges(String sportName) {
+        return Mono.fromCallable(() -> SportState.of(parserService.getTargetSportEvents(sportName)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(seed -> snapshotPoller.updates()
+                        .onBackpressureLatest()
+                        .publishOn(Schedulers.boundedElastic())
+                        .scan(seed, (state, snapshot) -> state.next(parserService.getTargetSportEvents(sportName))))
+                .skip(1)
+                .filter(SportState::hasChanges)
+                .map(state -> new SportChanges(state, toEvent(CHANGES_EVENT, sportName, state.version,
+                        state.changedEvents, state.removedEventIds)))
+                .replay(1)
+                .refCount();
+    }
+
+    private ServerSentEvent<String> toEvent(String type, String sportName, long version,
+                                            Collection<SportEvent> sportEvents, Set<Integer> removedEventIds) {
+        LiveLineChanges changes = LiveLineChanges.builder()
+                .sportName(sportName)
+                .snapshotVersion(version)
+                .sportEvents(sportEvents)
+                .removedEventIds(removedEventIds)
+                .build();
+        try {
+            return ServerSentEvent.builder(objectMapper.writeValueAsString(changes))
+                    .id(Long.toString(version))
+                    .event(type)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can't serialize changes of " + sportName, e);
+        }
+    }
+
+    /**
+     * Events seen by one subscriber
+     */
+    private class Subscriber {
+        private final String sportName;
+        private SportState seen;
+
+        Subscriber(String sportName, SportState snapshot) {
+            this.sportName = sportName;
+            this.seen = snapshot;
+        }
+
+        /**
+         * Shared payload if it was computed against the events this subscriber has,
+         * otherwise changes from its own events to the shared ones
+         * @return event to send, null if there is nothing new for subscriber
+         */
+        ServerSentEvent<String> next(SportChanges changes) {
+            SportState state = changes.state;
+            if (state.version <= seen.version)
+                return null;
+
+            ServerSentEvent<String> event = changes.event;
+            if (state.previousVersion != seen.version && state.previousEvents != seen.sportEventsById) {
+                SportState own = seen.next(state.version, state.sportEventsById);
+                event = own.hasChanges()
+                        ? toEvent(CHANGES_EVENT, sportName, own.version, own.changedEvents, own.removedEventIds)
+                        : null;
+            }
+            seen = state;
+            return event;
+        }
+    }
+
+    /**
+     * Shared changes of sport with their serialized payload
+     */
+    @RequiredArgsConstructor
+    private static class SportChanges {
+        private final SportState state;
+        private final ServerSentEvent<String> event;
+    }
+
+    /**
+     * Events of sport in one version and their changes against the previous version
+     */
+    private static class SportState {
+        private final long version;
+        private final Map<Integer, SportEvent> sportEventsById;
+        private final List<SportEvent> changedEvents;
+        private final Set<Integer> removedEventIds;
+        /** Version and events changes are computed against */
+        private final long previousVersion;
+        private final Map<Integer, SportEvent> previousEvents;
+
+        private SportState(long version, Map<Integer, SportEvent> sportEventsById,
+                           List<SportEvent> changedEvents, Set<Integer> removedEventIds,
+                           long previousVersion, Map<Integer, SportEvent> previousEvents) {
+            this.version = version;
+            this.sportEventsById = sportEventsById;
+            this.changedEvents = changedEvents;
+            this.removedEventIds = removedEventIds;
+            this.previousVersion = previousVersion;
+            this.previousEvents = previousEvents;
+        }
+
+        static SportState of(LiveLine liveLine) {
+            return new SportState(liveLine.getSnapshotVersion(), index(liveLine.getSportEvents()),
+                    Collections.emptyList(), Collections.emptySet(), liveLine.getSnapshotVersion(), null);
+        }
+
+        SportState next(LiveLine liveLine) {
+            return next(liveLine.getSnapshotVersion(), index(liveLine.getSportEvents()));
+        }
+
+        /**
+         * Events reused by incremental parse are the same objects, so they are skipped without comparing.
+         * Without changes the events of this state are kept, so that later changes are known
+         * to be computed against them
+         */
+        SportState next(long nextVersion, Map<Integer, SportEvent> next) {
+            List<SportEvent> changed = new ArrayList<>();
+            Set<Integer> removed = new HashSet<>(sportEventsById.keySet());
+
+            for (SportEvent sportEvent : next.values()) {
+                SportEvent previous = sportEventsById.get(sportEvent.getEventId());
+                removed.remove(sportEvent.getEventId());
+                if (previous != sportEvent && !sportEvent.equals(previous))
+                    changed.add(sportEvent);
+            }
+            return new SportState(nextVersion, changed.isEmpty() && removed.isEmpty() ? sportEventsById : next,
+                    changed, removed, version, sportEventsById);
+        }
+
+        boolean hasChanges() {
+            return !changedEvents.isEmpty() || !removedEventIds.isEmpty();
+        }
+
+        private static Map<Integer, SportEvent> index(Set<SportEvent> sportEvents) {
+            Map<Integer, SportEvent> sportEventsById = new HashMap<>(sportEvents.size() * 2);
+            for (SportEvent sportEvent : sportEvents) {
+                sportEventsById.put(sportEvent.getEventId(), sportEvent);
+            }
+            return sportEventsById;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.parser.fonbetparser.service;
+
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Immutable state of one parse of currentLine. Created per call, so parses
+ * for different sports don't share anything and may run in parallel
+ */
+@Value
+class ParseContext {
+    /** Names of parsed sports */
+    Collection<String> sportNames;
+    /** Ids of events to build, null to build all events */
+    Set<Integer> eventIds;
+
+    static ParseContext of(String sportName) {
+        return of(sportName, null);
+    }
+
+    static ParseContext of(String sportName, Set<Integer> eventIds) {
+        return of(Collections.singletonList(sportName), eventIds);
+    }
+
+    static ParseContext of(Collection<String> sportNames, Set<Integer> eventIds) {
+        return new ParseContext(sportNames, eventIds);
+    }
+
+    boolean accepts(int eventId) {
+        return eventIds == null || eventIds.contains(eventId);
+    }
+}
@@ -0,0 +1,148 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timers of parser stages, size of the latest line and errors of fonbet, exposed by actuator
+ * at /actuator/prometheus. All meters are registered once, recording a stage doesn't allocate.
+ * Counter of errors of one exception type is registered at the first of them
+ */
+@Component
+public class ParserMetrics {
+
+    static final String STAGE_TIMER = "fonbet.parser.stage";
+    static final String PAYLOAD_GAUGE = "fonbet.line.payload.size";
+    static final String ITEMS_GAUGE = "fonbet.line.items";
+    static final String NOT_MODIFIED_COUNTER = "fonbet.line.not.modified";
+    static final String ERRORS_COUNTER = "fonbet.line.errors";
+    static final String RETRIES_COUNTER = "fonbet.line.retries";
+    static final String HEDGED_COUNTER = "fonbet.line.hedged";
+
+    /**
+     * Stages of download and parse of currentLine
+     */
+    public enum Stage {
+        /** Request to fonbet until response headers */
+        DOWNLOAD("download"),
+        /** Streaming read of response body into CurrentLine */
+        JSON_PARSE("json_parse"),
+        /** Selection of segments of requested sports */
+        SPORT_FILTER("sport_filter"),
+        /** Building of events with their coefficients */
+        EVENT_JOIN("event_join"),
+        /** Attaching children to their root events */
+        CHILD_RESOLUTION("child_resolution"),
+        /** LiveLine to gzipped JSON */
+        SERIALIZATION("serialization"),
+        /** Check of changed coefficients by CoefficientAlertEngine */
+        ALERT_EVALUATION("alert_evaluation");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Counter notModified;
+    private final Counter retries;
+    private final Counter hedged;
+    private final ConcurrentMap<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+
+    private final AtomicLong payloadBytes = new AtomicLong();
+    private final AtomicLong sports = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong factors = new AtomicLong();
+
+    public ParserMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder(STAGE_TIMER)
+                    .description("Time of download and parse stages of currentLine")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        notModified = Counter.builder(NOT_MODIFIED_COUNTER)
+                .description("Downloads answered with 304 Not Modified")
+                .register(registry);
+        retries = Counter.builder(RETRIES_COUNTER)
+                .description("Downloads repeated after an error")
+                .register(registry);
+        hedged = Counter.builder(HEDGED_COUNTER)
+                .description("Requests sent to a mirror because the previous host was slow")
+                .register(registry);
+
+        Gauge.builder(PAYLOAD_GAUGE, payloadBytes, AtomicLong::get)
+                .description("Size of the latest downloaded currentLine, uncompressed")
+                .baseUnit("bytes")
+                .register(registry);
+        registerItemsGauge("sports", sports);
+        registerItemsGauge("events", events);
+        registerItemsGauge("factors", factors);
+    }
+
+    private void registerItemsGauge(String type, AtomicLong value) {
+        Gauge.builder(ITEMS_GAUGE, value, AtomicLong::get)
+                .description("Items of the latest downloaded currentLine")
+                .tag("type", type)
+                .register(registry);
+    }
+
+    /**
+     * Record time of stage
+     * @param stage finished stage
+     * @param startNanos System.nanoTime() at the start of stage
+     */
+    public void record(Stage stage, long startNanos) {
+        stageTimers[stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Remember size of downloaded line
+     * @param line downloaded line
+     * @param bytes size of response body, uncompressed
+     */
+    public void downloaded(CurrentLine line, long bytes) {
+        payloadBytes.set(bytes);
+        sports.set(line.getSports().size());
+        events.set(line.getEvents().size());
+        factors.set(line.getFactors().size());
+    }
+
+    public void notModified() {
+        notModified.increment();
+    }
+
+    public void retry() {
+        retries.increment();
+    }
+
+    public void hedged() {
+        hedged.increment();
+    }
+
+    /**
+     * Count failed download or parse of currentLine
+     * @param e error
+     */
+    public void error(Exception e) {
+        errors.computeIfAbsent(e.getClass(), type -> Counter.builder(ERRORS_COUNTER)
+                .description("Failed downloads and parses of currentLine")
+                .tag("exception", type.getSimpleName())
+                .register(registry))
+                .increment();
+    }
+}
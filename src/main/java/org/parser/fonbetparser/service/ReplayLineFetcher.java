@@ -0,0 +1,57 @@
+package org.parser.fonbetparser.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineLogReader;
+import org.parser.fonbetparser.line.LineSport;
+import org.parser.fonbetparser.line.LoggedLine;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Fetcher returning lines recorded by LineLogRecorder instead of downloading them, one per fetch.
+ * Lines are replayed as fast as fonbet.live.poll-interval allows. After the last record
+ * the last line is returned again, so snapshot version doesn't change anymore
+ */
+@Slf4j
+public class ReplayLineFetcher implements LineFetcher {
+
+    private final LineLogReader.Cursor cursor;
+    private final ParserMetrics metrics;
+    private volatile CurrentLine lastLine;
+
+    /**
+     * @param reader recorded log
+     * @param from epoch millis of the first replayed record, 0 for the whole log
+     * @param metrics metrics of parse
+     */
+    public ReplayLineFetcher(LineLogReader reader, long from, ParserMetrics metrics) {
+        this.cursor = reader.cursor(from);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public synchronized CurrentLine fetch(Predicate<LineSport> sportFilter) throws IOException {
+        if (!cursor.hasNext()) {
+            if (lastLine == null)
+                throw new IOException("No recorded lines");
+            return lastLine;
+        }
+
+        long start = System.nanoTime();
+        LoggedLine logged = cursor.next(sportFilter);
+        metrics.record(ParserMetrics.Stage.JSON_PARSE, start);
+        metrics.downloaded(logged.getLine(), logged.getSize());
+        if (!cursor.hasNext())
+            log.info("Replay finished at line downloaded " + logged.getTime());
+
+        lastLine = logged.getLine();
+        return lastLine;
+    }
+
+    @Override
+    public CurrentLine getLastLine() {
+        return lastLine;
+    }
+}
@@ -0,0 +1,471 @@
+package org.parser.fonbetparser.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.parser.fonbetparser.domain.Coefficients;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.domain.SportEventPage;
+import org.parser.fonbetparser.domain.SportEventQuery;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Secondary indexes over events of all sports of the latest snapshot: by sportType, countryName, league,
+ * team and eventId, and the order of events by every sort field. Indexes are built by the first query
+ * of a new snapshot version, so a query touches only posting lists of its filters and events of its page
+ */
+@Component
+@Slf4j
+public class SportEventIndex {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+    private static final String DESCENDING = "-";
+    private static final String COEFFICIENTS = "coefficients";
+    private static final List<String> EVENT_FIELDS = Arrays.asList(
+            "eventId", "sportType", "countryName", "league", "name", "sportTeam", COEFFICIENTS, "children");
+    private static final List<String> MARKET_FIELDS =
+            Arrays.asList("coefficient", "doubleChance", "handicap", "totals");
+
+    /**
+     * Fields events can be sorted by, ties are ordered by eventId
+     */
+    enum SortField {
+        EVENT_ID("eventId", event -> null),
+        SPORT_TYPE("sportType", SportEvent::getSportType),
+        COUNTRY_NAME("countryName", SportEvent::getCountryName),
+        LEAGUE("league", SportEvent::getLeague),
+        NAME("name", SportEvent::getName);
+
+        private final String field;
+        private final Function<SportEvent, String> value;
+
+        SortField(String field, Function<SportEvent, String> value) {
+            this.field = field;
+            this.value = value;
+        }
+
+        static SortField of(String field) {
+            for (SortField sortField : values()) {
+                if (sortField.field.equals(field))
+                    return sortField;
+            }
+            throw new IllegalArgumentException("Events can't be sorted by " + field);
+        }
+
+        int compare(SportEvent event, String value, int eventId) {
+            int res = compareNullsFirst(this.value.apply(event), value);
+            return res != 0 ? res : Integer.compare(event.getEventId(), eventId);
+        }
+    }
+
+    private final FonbetLiveParserService parserService;
+    private final LineSnapshotPoller snapshotPoller;
+    private volatile Index index;
+
+    public SportEventIndex(FonbetLiveParserService parserService, LineSnapshotPoller snapshotPoller) {
+        this.parserService = parserService;
+        this.snapshotPoller = snapshotPoller;
+    }
+
+    /**
+     * Page of events of the latest snapshot
+     * @param query filters, projection, order and cursor
+     * @return projected events of page and cursor of the next one
+     * @throws IllegalArgumentException if field, sort or cursor of query is malformed
+     */
+    public SportEventPage query(SportEventQuery query) {
+        List<String> fields = fields(query.getFields());
+        String sort = query.getSort() == null || query.getSort().isEmpty() ? "eventId" : query.getSort();
+        boolean descending = sort.startsWith(DESCENDING);
+        SortField sortField = SortField.of(descending ? sort.substring(1) : sort);
+        Cursor cursor = query.getCursor() == null || query.getCursor().isEmpty()
+                ? null
+                : Cursor.decode(query.getCursor(), sort);
+        int limit = query.getLimit() <= 0 ? DEFAULT_LIMIT : Math.min(query.getLimit(), MAX_LIMIT);
+
+        Index current = current();
+        int[] ordered = current.order(current.match(query), sortField, descending);
+        int start = cursor == null ? 0 : current.after(ordered, sortField, descending, cursor);
+        int end = Math.min(ordered.length, start + limit);
+
+        List<Map<String, Object>> events = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            events.add(project(current.events[ordered[i]], fields));
+        }
+        String nextCursor = null;
+        if (end < ordered.length) {
+            SportEvent last = current.events[ordered[end - 1]];
+            nextCursor = new Cursor(sort, last.getEventId(), sortField.value.apply(last)).encode();
+        }
+
+        return SportEventPage.builder()
+                .snapshotVersion(current.version)
+                .total(ordered.length)
+                .events(events)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Index of the latest snapshot, built if snapshot version changed. While fonbet is failing
+     * the index of the last downloaded snapshot is used
+     */
+    private Index current() {
+        Index current = index;
+        long version;
+        try {
+            version = snapshotPoller.getSnapshot().getVersion();
+        } catch (IOException e) {
+            log.error("Error while getting JSON from server " + e);
+            return current != null ? current : Index.EMPTY;
+        }
+        if (current != null && current.version == version)
+            return current;
+
+        synchronized (this) {
+            current = index;
+            if (current == null || current.version != version) {
+                current = Index.of(parserService.getTargetSportEvents((Collection<String>) null));
+                index = current;
+            }
+            return current;
+        }
+    }
+
+    private static List<String> fields(List<String> fields) {
+        if (fields == null || fields.isEmpty())
+            return EVENT_FIELDS;
+
+        for (String field : fields) {
+            if (!EVENT_FIELDS.contains(field) && !MARKET_FIELDS.contains(field))
+                throw new IllegalArgumentException("Unknown field " + field);
+        }
+        return fields;
+    }
+
+    /**
+     * @param event event of index
+     * @param fields fields of SportEvent and markets of coefficients, markets are returned inside coefficients
+     * @return field name -> value, in order of fields
+     */
+    static Map<String, Object> project(SportEvent event, List<String> fields) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        for (String field : fields) {
+            switch (field) {
+                case "eventId":
+                    res.put(field, event.getEventId());
+                    break;
+                case "sportType":
+                    res.put(field, event.getSportType());
+                    break;
+                case "countryName":
+                    res.put(field, event.getCountryName());
+                    break;
+                case "league":
+                    res.put(field, event.getLeague());
+                    break;
+                case "name":
+                    res.put(field, event.getName());
+                    break;
+                case "sportTeam":
+                    res.put(field, event.getSportTeam());
+                    break;
+                case COEFFICIENTS:
+                    res.put(field, event.getCoefficients());
+                    break;
+                case "children":
+                    res.put(field, event.getChildren());
+                    break;
+                default:
+                    projectMarket(event.getCoefficients(), field, res);
+            }
+        }
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void projectMarket(Coefficients coefficients, String market, Map<String, Object> res) {
+        if (coefficients == null || res.get(COEFFICIENTS) instanceof Coefficients)
+            return;
+
+        Map<String, Object> markets = (Map<String, Object>) res.computeIfAbsent(COEFFICIENTS,
+                key -> new LinkedHashMap<>());
+        switch (market) {
+            case "coefficient":
+                markets.put(market, coefficients.getCoefficient());
+                break;
+            case "doubleChance":
+                markets.put(market, coefficients.getDoubleChance());
+                break;
+            case "handicap":
+                markets.put(market, coefficients.getHandicap());
+                break;
+            default:
+                markets.put(market, coefficients.getTotals());
+        }
+    }
+
+    private static int compareNullsFirst(String a, String b) {
+        if (a == null)
+            return b == null ? 0 : -1;
+        return b == null ? 1 : a.compareTo(b);
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Immutable indexes of one snapshot. Events are identified by their position in events sorted by eventId,
+     * posting lists are sorted positions
+     */
+    private static final class Index {
+
+        static final Index EMPTY = of(Collections.emptyMap());
+
+        final long version;
+        final SportEvent[] events;
+        final Map<String, int[]> bySportType;
+        final Map<String, int[]> byCountryName;
+        final Map<String, int[]> byLeague;
+        final Map<String, int[]> byTeam;
+        /** Positions ordered by SortField */
+        final int[][] orders = new int[SortField.values().length][];
+        /** Place of every position in orders of SortField */
+        final int[][] ranks = new int[SortField.values().length][];
+
+        private Index(long version, SportEvent[] events) {
+            this.version = version;
+            this.events = events;
+            bySportType = postings(events, event -> Collections.singletonList(event.getSportType()));
+            byCountryName = postings(events, event -> Collections.singletonList(event.getCountryName()));
+            byLeague = postings(events, event -> Collections.singletonList(event.getLeague()));
+            byTeam = postings(events, event -> event.getSportTeam() == null
+                    ? Collections.emptyList()
+                    : Arrays.asList(event.getSportTeam().getTeam1(), event.getSportTeam().getTeam2()));
+
+            for (SortField sortField : SortField.values()) {
+                Integer[] order = new Integer[events.length];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+                if (sortField != SortField.EVENT_ID) {
+                    Arrays.sort(order, (a, b) -> sortField.compare(events[a],
+                            sortField.value.apply(events[b]), events[b].getEventId()));
+                }
+                int[] positions = new int[order.length];
+                int[] rank = new int[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    positions[i] = order[i];
+                    rank[order[i]] = i;
+                }
+                orders[sortField.ordinal()] = positions;
+                ranks[sortField.ordinal()] = rank;
+            }
+        }
+
+        /**
+         * An event whose segment matches several sport names is indexed once, as in its first sport
+         */
+        static Index of(Map<String, LiveLine> liveLines) {
+            long version = 0;
+            Map<Integer, SportEvent> events = new TreeMap<>();
+            for (LiveLine liveLine : liveLines.values()) {
+                version = liveLine.getSnapshotVersion();
+                for (SportEvent event : liveLine.getSportEvents()) {
+                    events.putIfAbsent(event.getEventId(), event);
+                }
+            }
+            return new Index(version, events.values().toArray(new SportEvent[0]));
+        }
+
+        /**
+         * @return sorted positions of events matching filters of query, null if query has no filters
+         */
+        int[] match(SportEventQuery query) {
+            List<int[]> postings = new ArrayList<>();
+            if (!addPosting(postings, bySportType, query.getSportType())
+                    || !addPosting(postings, byCountryName, query.getCountryName())
+                    || !addPosting(postings, byLeague, query.getLeague())
+                    || !addPosting(postings, byTeam, query.getTeam()))
+                return new int[0];
+            if (query.getEventIds() != null)
+                postings.add(positionsOf(query.getEventIds()));
+            if (postings.isEmpty())
+                return null;
+
+            postings.sort(Comparator.comparingInt(posting -> posting.length));
+            int[] res = postings.get(0);
+            for (int i = 1; i < postings.size() && res.length > 0; i++) {
+                res = intersect(res, postings.get(i));
+            }
+            return res;
+        }
+
+        /**
+         * @param matched sorted positions, null for all events
+         * @return positions in order of sortField
+         */
+        int[] order(int[] matched, SortField sortField, boolean descending) {
+            int[] res;
+            if (matched == null) {
+                res = orders[sortField.ordinal()].clone();
+            } else if (sortField == SortField.EVENT_ID) {
+                res = matched.clone();
+            } else {
+                int[] rank = ranks[sortField.ordinal()];
+                int[] order = orders[sortField.ordinal()];
+                res = new int[matched.length];
+                for (int i = 0; i < matched.length; i++) {
+                    res[i] = rank[matched[i]];
+                }
+                Arrays.sort(res);
+                for (int i = 0; i < res.length; i++) {
+                    res[i] = order[res[i]];
+                }
+            }
+
+            if (descending) {
+                for (int i = 0, j = res.length - 1; i < j; i++, j--) {
+                    int position = res[i];
+                    res[i] = res[j];
+                    res[j] = position;
+                }
+            }
+            return res;
+        }
+
+        /**
+         * @return index of the first of ordered positions coming after cursor
+         */
+        int after(int[] ordered, SortField sortField, boolean descending, Cursor cursor) {
+            int low = 0;
+            int high = ordered.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int res = sortField.compare(events[ordered[mid]], cursor.value, cursor.eventId);
+                if (descending ? res < 0 : res > 0)
+                    high = mid;
+                else
+                    low = mid + 1;
+            }
+            return low;
+        }
+
+        private static boolean addPosting(List<int[]> postings, Map<String, int[]> index, String value) {
+            if (value == null)
+                return true;
+
+            int[] posting = index.get(key(value));
+            if (posting == null)
+                return false;
+            postings.add(posting);
+            return true;
+        }
+
+        private int[] positionsOf(List<Integer> eventIds) {
+            int[] res = new int[eventIds.size()];
+            int size = 0;
+            for (Integer eventId : eventIds) {
+                int position = binarySearch(eventId);
+                if (position >= 0)
+                    res[size++] = position;
+            }
+            res = Arrays.copyOf(res, size);
+            Arrays.sort(res);
+            return res;
+        }
+
+        private int binarySearch(int eventId) {
+            int low = 0;
+            int high = events.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int res = Integer.compare(events[mid].getEventId(), eventId);
+                if (res == 0)
+                    return mid;
+                if (res < 0)
+                    low = mid + 1;
+                else
+                    high = mid - 1;
+            }
+            return -1;
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] res = new int[Math.min(a.length, b.length)];
+            int size = 0;
+            for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    if (size == 0 || res[size - 1] != a[i])
+                        res[size++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(res, size);
+        }
+
+        private static Map<String, int[]> postings(SportEvent[] events, Function<SportEvent, List<String>> values) {
+            Map<String, List<Integer>> positions = new HashMap<>();
+            for (int i = 0; i < events.length; i++) {
+                for (String value : values.apply(events[i])) {
+                    if (value == null)
+                        continue;
+                    List<Integer> posting = positions.computeIfAbsent(key(value), k -> new ArrayList<>());
+                    if (posting.isEmpty() || posting.get(posting.size() - 1) != i)
+                        posting.add(i);
+                }
+            }
+
+            Map<String, int[]> res = new HashMap<>(positions.size() * 2);
+            for (Map.Entry<String, List<Integer>> posting : positions.entrySet()) {
+                res.put(posting.getKey(), posting.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Sort key of the last event of a page. Pages follow by sort key, not by position,
+     * so a cursor stays valid when a new snapshot adds or removes events
+     */
+    private static final class Cursor {
+        final String sort;
+        final int eventId;
+        /** Value of sort field, null if event had none or events are sorted by eventId */
+        final String value;
+
+        Cursor(String sort, int eventId, String value) {
+            this.sort = sort;
+            this.eventId = eventId;
+            this.value = value;
+        }
+
+        String encode() {
+            String key = sort + "\n" + eventId + (value == null ? "" : "\n" + value);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor, String sort) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                        .split("\n", 3);
+                if (parts.length < 2 || !parts[0].equals(sort))
+                    throw new IllegalArgumentException("Cursor doesn't belong to sort " + sort);
+                return new Cursor(sort, Integer.parseInt(parts[1]), parts.length == 3 ? parts[2] : null);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Malformed cursor " + cursor, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.parser.fonbetparser.service;
+
+import lombok.Value;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.line.LineSport;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits names of sport segments into sportType, country and league. Rules from fonbet.live.segment-rules
+ * are compiled once, every segment is parsed once per sport id and reused by following polls
+ */
+@Component
+public class SportNameClassifier {
+
+    private static final int MAX_CACHED_SEGMENTS = 8192;
+
+    /** Rules with longer sport name first, so "Футбол. Жен" wins over "Футбол" */
+    private final List<SegmentRule> rules = new ArrayList<>();
+    private final Map<Integer, SegmentInfo> segmentsById = new ConcurrentHashMap<>();
+
+    public SportNameClassifier(FonbetLiveProperties properties) {
+        for (Map.Entry<String, String> rule : properties.getSegmentRules().entrySet()) {
+            rules.add(new SegmentRule(rule.getKey(), Pattern.compile(rule.getValue())));
+        }
+        rules.sort(Comparator.comparingInt((SegmentRule rule) -> rule.getSportName().length()).reversed());
+    }
+
+    /**
+     * Check if segment belongs to sport, sport name is compared literally
+     * @param segment segment from sports of currentLine
+     * @param sportName name of sport from request
+     * @return true if name of segment contains sport name
+     */
+    public boolean matches(LineSport segment, String sportName) {
+        return "segment".equals(segment.getKind())
+                && segment.getName() != null
+                && segment.getName().contains(sportName);
+    }
+
+    /**
+     * Get from name of segment sportType, country and league
+     * @param segment segment from sports of currentLine
+     * @return parsed name, the whole name for all three parts if no rule matches it
+     */
+    public SegmentInfo classify(LineSport segment) {
+        SegmentInfo segmentInfo = segmentsById.get(segment.getId());
+        if (segmentInfo != null && segmentInfo.getSegmentName().equals(segment.getName()))
+            return segmentInfo;
+
+        segmentInfo = parse(segment.getName());
+        if (segmentsById.size() >= MAX_CACHED_SEGMENTS)
+            segmentsById.clear();
+        segmentsById.put(segment.getId(), segmentInfo);
+        return segmentInfo;
+    }
+
+    private SegmentInfo parse(String segmentName) {
+        for (SegmentRule rule : rules) {
+            if (!segmentName.startsWith(rule.getSportName()))
+                continue;
+
+            Matcher matcher = rule.getPattern().matcher(segmentName);
+            if (matcher.find()) {
+                return new SegmentInfo(segmentName,
+                        group(matcher, "sportType"),
+                        group(matcher, "countryName"),
+                        group(matcher, "league"));
+            }
+        }
+        return new SegmentInfo(segmentName, segmentName, segmentName, segmentName);
+    }
+
+    private static String group(Matcher matcher, String name) {
+        try {
+            return matcher.group(name);
+        } catch (IllegalArgumentException e) {
+            // rule has no such group
+            return null;
+        }
+    }
+
+    /**
+     * Parts of segment name, e.g. "Футбол. Англия. Премьер-лига"
+     */
+    @Value
+    public static class SegmentInfo {
+        String segmentName;
+        String sportType;
+        String countryName;
+        String league;
+    }
+
+    @Value
+    private static class SegmentRule {
+        String sportName;
+        Pattern pattern;
+    }
+}
@@ -0,0 +1,159 @@
+package org.parser.fonbetparser;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.line.LineEvent;
+import org.parser.fonbetparser.line.LineFactor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Recorded currentLine payloads from src/test/resources/fixtures
+ */
+public final class LineFixtures {
+
+    public static final String CURRENT_LINE = "fixtures/currentLine.json";
+
+    /** Recorded currentLine */
+    public static final String SMALL = "small";
+    /** Recorded currentLine repeated to the size of a peak evening line, about 1.7k events */
+    public static final String PEAK = "peak";
+    /** Ten times the peak evening line */
+    public static final String X10 = "x10";
+
+    private static final int PEAK_COPIES = 60;
+    private static final int EVENT_ID_STEP = 100_000;
+
+    private LineFixtures() {
+    }
+
+    /**
+     * Load fixture as raw bytes
+     * @param name path of fixture in classpath
+     * @return content of fixture
+     */
+    public static byte[] bytes(String name) {
+        try (InputStream in = LineFixtures.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null)
+                throw new IllegalArgumentException("No fixture " + name);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read fixture " + name, e);
+        }
+    }
+
+    /**
+     * Load fixture as JSON tree
+     * @param name path of fixture in classpath
+     * @return parsed fixture
+     */
+    public static JsonObject json(String name) {
+        return JsonParser.parseString(new String(bytes(name), StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    /**
+     * Payload of given size, generated offline from the recorded fixture
+     * @param size SMALL, PEAK or X10
+     * @return currentLine in UTF-8
+     */
+    public static byte[] payload(String size) {
+        switch (size) {
+            case SMALL:
+                return bytes(CURRENT_LINE);
+            case PEAK:
+                return scaled(PEAK_COPIES);
+            case X10:
+                return scaled(PEAK_COPIES * 10);
+            default:
+                throw new IllegalArgumentException("Unknown payload size " + size);
+        }
+    }
+
+    /**
+     * Recorded fixture with events and customFactors repeated with new ids. Sports stay the same,
+     * values of factors are shifted a little in every copy
+     * @param copies number of copies of events
+     * @return currentLine in UTF-8
+     */
+    public static byte[] scaled(int copies) {
+        JsonObject line = json(CURRENT_LINE);
+        JsonArray events = new JsonArray();
+        JsonArray factors = new JsonArray();
+
+        for (int copy = 0; copy < copies; copy++) {
+            int offset = copy * EVENT_ID_STEP;
+            for (JsonElement element : line.getAsJsonArray("events")) {
+                JsonObject event = element.getAsJsonObject().deepCopy();
+                event.addProperty("id", event.get("id").getAsInt() + offset);
+                if (event.has("parentId"))
+                    event.addProperty("parentId", event.get("parentId").getAsInt() + offset);
+                events.add(event);
+            }
+            for (JsonElement element : line.getAsJsonArray("customFactors")) {
+                JsonObject factor = element.getAsJsonObject().deepCopy();
+                factor.addProperty("e", factor.get("e").getAsInt() + offset);
+                factor.addProperty("v", Math.round((factor.get("v").getAsFloat() + copy % 7 * 0.05f) * 100) / 100f);
+                factors.add(factor);
+            }
+        }
+
+        line.add("events", events);
+        line.add("customFactors", factors);
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read fixture with CurrentLineReader
+     * @param name path of fixture in classpath
+     * @return all sports, events and factors of fixture
+     */
+    public static CurrentLine currentLine(String name) {
+        try {
+            return CurrentLineReader.read(new ByteArrayInputStream(bytes(name)), sport -> true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read fixture " + name, e);
+        }
+    }
+
+    /**
+     * Copy of line with new value of one factor
+     */
+    public static CurrentLine withFactor(CurrentLine line, int eventId, int factorId, float value) {
+        List<LineFactor> factors = line.getFactors().stream()
+                .map(factor -> factor.getEventId() == eventId && factor.getFactorId() == factorId
+                        ? new LineFactor(eventId, factorId, value)
+                        : factor)
+                .collect(Collectors.toList());
+        return new CurrentLine(line.getPacketVersion() + 1, line.getSports(), line.getEvents(), factors);
+    }
+
+    /**
+     * Copy of line without event and its factors
+     */
+    public static CurrentLine withoutEvent(CurrentLine line, int eventId) {
+        List<LineEvent> events = line.getEvents().stream()
+                .filter(event -> event.getId() != eventId)
+                .collect(Collectors.toList());
+        List<LineFactor> factors = line.getFactors().stream()
+                .filter(factor -> factor.getEventId() != eventId)
+                .collect(Collectors.toList());
+        return new CurrentLine(line.getPacketVersion() + 1, line.getSports(), events, factors);
+    }
+}
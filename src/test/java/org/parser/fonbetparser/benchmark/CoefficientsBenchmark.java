@@ -0,0 +1,96 @@
+package org.parser.fonbetparser.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.domain.Coefficients;
+import org.parser.fonbetparser.line.LineFactor;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Building Coefficients of one event: four HashMaps with dictionaries built per call
+ * against the float array keyed by Factor. With -prof gc, gc.alloc.rate.norm is bytes per event
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoefficientsBenchmark {
+
+    private List<LineFactor> factors;
+
+    @Setup
+    public void setUp() {
+        Map<Integer, List<LineFactor>> factorsByEventId = LineFixtures.currentLine(LineFixtures.CURRENT_LINE)
+                .getFactors().stream()
+                .collect(Collectors.groupingBy(LineFactor::getEventId));
+        factors = factorsByEventId.values().stream()
+                .max(Comparator.comparingInt(List::size))
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    @Benchmark
+    public Coefficients primitive() {
+        Coefficients coefficients = new Coefficients();
+        for (LineFactor factor : factors) {
+            coefficients.set(factor.getFactorId(), factor.getValue());
+        }
+        return coefficients;
+    }
+
+    @Benchmark
+    public Object legacyMaps() {
+        return LegacyCoefficients.collect(factors);
+    }
+
+    /**
+     * Coefficients as they were built before, four HashMaps and four dictionaries per event
+     */
+    static final class LegacyCoefficients {
+        final Map<String, Float> coefficient = new HashMap<>();
+        final Map<String, Float> doubleChance = new HashMap<>();
+        final Map<String, Float> handicap = new HashMap<>();
+        final Map<String, Float> totals = new HashMap<>();
+
+        static LegacyCoefficients collect(List<LineFactor> factors) {
+            LegacyCoefficients coefficients = new LegacyCoefficients();
+
+            Map<Integer, String> coefficientDict = new HashMap<>();
+            coefficientDict.put(921, "1");
+            coefficientDict.put(922, "X");
+            coefficientDict.put(923, "2");
+
+            Map<Integer, String> doubleChanceDict = new HashMap<>();
+            doubleChanceDict.put(924, "1X");
+            doubleChanceDict.put(1571, "12");
+            doubleChanceDict.put(925, "X2");
+
+            Map<Integer, String> handicapDict = new HashMap<>();
+            handicapDict.put(927, "Фора 1");
+            handicapDict.put(928, "Фора 2");
+
+            Map<Integer, String> totalsDict = new HashMap<>();
+            totalsDict.put(930, "Тотал Б");
+            totalsDict.put(931, "Тотал М");
+
+            for (LineFactor factor : factors) {
+                int factorNumber = factor.getFactorId();
+
+                if (coefficientDict.containsKey(factorNumber)) {
+                    coefficients.coefficient.put(coefficientDict.get(factorNumber), factor.getValue());
+                } else if (doubleChanceDict.containsKey(factorNumber)) {
+                    coefficients.doubleChance.put(doubleChanceDict.get(factorNumber), factor.getValue());
+                } else if (handicapDict.containsKey(factorNumber)) {
+                    coefficients.handicap.put(handicapDict.get(factorNumber), factor.getValue());
+                } else if (totalsDict.containsKey(factorNumber)) {
+                    coefficients.totals.put(totalsDict.get(factorNumber), factor.getValue());
+                }
+            }
+            return coefficients;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.parser.fonbetparser.benchmark;
+
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.domain.Coefficients;
+import org.parser.fonbetparser.line.LineFactor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Retained heap per event of legacy and primitive Coefficients. Keeps many copies alive
+ * and compares used heap after GC; the second round is the one to read. Run it in a separate JVM:
+ * java -cp target/test-classes:... org.parser.fonbetparser.benchmark.CoefficientsFootprint
+ */
+public final class CoefficientsFootprint {
+
+    private static final int COPIES = 200_000;
+
+    private CoefficientsFootprint() {
+    }
+
+    public static void main(String[] args) {
+        List<List<LineFactor>> events = LineFixtures.currentLine(LineFixtures.CURRENT_LINE).getFactors().stream()
+                .collect(Collectors.groupingBy(LineFactor::getEventId))
+                .values().stream()
+                .collect(Collectors.toList());
+
+        for (int round = 0; round < 2; round++) {
+            System.out.printf("legacy maps: %d bytes per event%n",
+                    retainedPerEvent(events, CoefficientsBenchmark.LegacyCoefficients::collect));
+            System.out.printf("primitive:   %d bytes per event%n",
+                    retainedPerEvent(events, factors -> {
+                        Coefficients coefficients = new Coefficients();
+                        factors.forEach(factor -> coefficients.set(factor.getFactorId(), factor.getValue()));
+                        return coefficients;
+                    }));
+        }
+    }
+
+    private static long retainedPerEvent(List<List<LineFactor>> events, Function<List<LineFactor>, Object> build) {
+        Object[] retained = new Object[COPIES];
+        long before = usedHeap();
+        for (int i = 0; i < COPIES; i++) {
+            retained[i] = build.apply(events.get(i % events.size()));
+        }
+        long after = usedHeap();
+
+        if (retained[COPIES - 1] == null)
+            throw new IllegalStateException();
+        return (after - before) / COPIES;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
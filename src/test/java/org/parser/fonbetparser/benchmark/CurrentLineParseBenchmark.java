@@ -0,0 +1,58 @@
+package org.parser.fonbetparser.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tree parse of currentLine (String + JsonObject) against streaming parse with JsonReader.
+ * Run with -prof gc to compare allocation per operation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrentLineParseBenchmark {
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = LineFixtures.bytes(LineFixtures.CURRENT_LINE);
+    }
+
+    @Benchmark
+    public void treeParse(Blackhole blackhole) {
+        JsonObject currentLine = JsonParser.parseString(new String(payload, StandardCharsets.UTF_8)).getAsJsonObject();
+        JsonArray sports = currentLine.getAsJsonArray("sports");
+        JsonArray events = currentLine.getAsJsonArray("events");
+        JsonArray factors = currentLine.getAsJsonArray("customFactors");
+
+        blackhole.consume(sports);
+        blackhole.consume(events);
+        blackhole.consume(factors);
+    }
+
+    @Benchmark
+    public CurrentLine streamingParse() throws IOException {
+        return CurrentLineReader.read(new ByteArrayInputStream(payload), sport -> true);
+    }
+
+    @Benchmark
+    public CurrentLine streamingParseOneSport() throws IOException {
+        return CurrentLineReader.read(new ByteArrayInputStream(payload),
+                sport -> "segment".equals(sport.getKind()) && sport.getName().startsWith("Хоккей"));
+    }
+}
@@ -0,0 +1,156 @@
+package org.parser.fonbetparser.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.parser.fonbetparser.line.LineLogReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the fonbet host. Serves a currentLine payload on /live/currentLine/ru. Before every
+ * response a share of customFactors gets new values and packetVersion is increased, as a live line does
+ * between polls. Started over a line log, it serves the recorded payloads in order instead, from the first
+ * one again after the last. Every response is sent after a fixed latency
+ */
+public final class FonbetStub implements Closeable {
+
+    static final String PATH = "/live/currentLine/ru";
+
+    /** Largest relative change of a mutated factor */
+    private static final float MAX_CHANGE = 0.1f;
+
+    /** null if a line log is replayed */
+    private final JsonObject line;
+    private final JsonArray factors;
+    /** null if a mutated payload is served */
+    private final LineLogReader log;
+    private LineLogReader.Cursor cursor;
+    private final float mutationRate;
+    private final long latencyMillis;
+    /** Fixed seed, so runs with the same settings serve the same lines */
+    private final Random random = new Random(42);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final HttpServer server;
+
+    /**
+     * Start stub on a free local port
+     * @param payload currentLine JSON in UTF-8
+     * @param mutationRate share of customFactors changed before every response, 0 to serve the same line
+     * @param latencyMillis delay of every response, ms
+     * @return started stub
+     * @throws IOException if port can't be bound
+     */
+    public static FonbetStub start(byte[] payload, float mutationRate, long latencyMillis) throws IOException {
+        JsonObject line = JsonParser.parseString(new String(payload, StandardCharsets.UTF_8)).getAsJsonObject();
+        return new FonbetStub(line, null, mutationRate, latencyMillis);
+    }
+
+    /**
+     * Start stub replaying a line log on a free local port
+     * @param logDir directory of LineLogWriter, e.g. fonbet.live.record-dir
+     * @param latencyMillis delay of every response, ms
+     * @return started stub
+     * @throws IOException if log can't be read, has no records or port can't be bound
+     */
+    public static FonbetStub replay(Path logDir, long latencyMillis) throws IOException {
+        LineLogReader log = LineLogReader.open(logDir);
+        if (log.size() == 0)
+            throw new IOException("No recorded lines in " + logDir);
+        return new FonbetStub(null, log, 0, latencyMillis);
+    }
+
+    private FonbetStub(JsonObject line, LineLogReader log, float mutationRate, long latencyMillis) throws IOException {
+        this.line = line;
+        this.factors = line == null ? null : line.getAsJsonArray("customFactors");
+        this.log = log;
+        this.cursor = log == null ? null : log.cursor(0);
+        this.mutationRate = mutationRate;
+        this.latencyMillis = latencyMillis;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return value for fonbet.live.url
+     */
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    /**
+     * @return requests answered so far
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Mutate line and serialize it, or read the next record of log
+     * @return next currentLine in UTF-8
+     * @throws IOException if record of log can't be read
+     */
+    synchronized byte[] next() throws IOException {
+        if (log != null) {
+            if (!cursor.hasNext())
+                cursor = log.cursor(0);
+            return cursor.nextPayload();
+        }
+
+        int mutations = Math.round(factors.size() * mutationRate);
+        for (int i = 0; i < mutations; i++) {
+            JsonObject factor = factors.get(random.nextInt(factors.size())).getAsJsonObject();
+            float value = factor.get("v").getAsFloat() * (1 + (random.nextFloat() * 2 - 1) * MAX_CHANGE);
+            factor.addProperty("v", Math.max(1.01f, Math.round(value * 100) / 100f));
+        }
+        if (mutations > 0 && line.has("packetVersion"))
+            line.addProperty("packetVersion", line.get("packetVersion").getAsLong() + 1);
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().close();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        byte[] body;
+        try {
+            body = next();
+        } catch (IOException e) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            throw e;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.parser.fonbetparser.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.line.LineFactor;
+import org.parser.fonbetparser.line.LineLogWriter;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pieces of LoadTest which decide what it measures: lines served by the stub and percentiles
+ */
+class FonbetStubTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stubServesMutatedLines() throws IOException {
+        try (FonbetStub stub = FonbetStub.start(LineFixtures.bytes(LineFixtures.CURRENT_LINE), 0.1f, 50)) {
+            long start = System.nanoTime();
+            CurrentLine first = download(stub);
+            assertTrue(System.nanoTime() - start >= 50_000_000L);
+            CurrentLine second = download(stub);
+
+            assertEquals(2, stub.getRequests());
+            assertEquals(first.getPacketVersion() + 1, second.getPacketVersion());
+            assertEquals(first.getEvents(), second.getEvents());
+            int changed = 0;
+            for (int i = 0; i < first.getFactors().size(); i++) {
+                LineFactor before = first.getFactors().get(i);
+                LineFactor after = second.getFactors().get(i);
+                assertEquals(before.getEventId(), after.getEventId());
+                if (before.getValue() != after.getValue())
+                    changed++;
+            }
+            assertTrue(changed > 0);
+            assertTrue(changed <= Math.round(first.getFactors().size() * 0.1f));
+        }
+    }
+
+    @Test
+    void sameLineWithoutMutations() throws IOException {
+        try (FonbetStub stub = FonbetStub.start(LineFixtures.bytes(LineFixtures.CURRENT_LINE), 0, 0)) {
+            assertEquals(download(stub), download(stub));
+        }
+    }
+
+    @Test
+    void stubReplaysLineLogInOrder() throws IOException {
+        byte[] first = LineFixtures.bytes(LineFixtures.CURRENT_LINE);
+        byte[] second = LineFixtures.scaled(2);
+        try (LineLogWriter writer = new LineLogWriter(dir, 1 << 20)) {
+            writer.append(1000, 1, first);
+            writer.append(2000, 2, second);
+        }
+
+        try (FonbetStub stub = FonbetStub.replay(dir, 0)) {
+            assertArrayEquals(first, body(stub));
+            assertArrayEquals(second, body(stub));
+            assertArrayEquals(first, body(stub));
+        }
+    }
+
+    @Test
+    void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(50_000_000, histogram.percentile(0.5), 50_000_000 / 32.0);
+        assertEquals(99_900_000, histogram.percentile(0.999), 99_900_000 / 32.0);
+        assertEquals(100_000_000L, histogram.percentile(1));
+
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.add(histogram);
+        merged.record(5);
+        assertEquals(100_001, merged.getCount());
+        assertEquals(5, merged.percentile(0));
+    }
+
+    private static byte[] body(FonbetStub stub) throws IOException {
+        try (InputStream in = new URL(stub.url()).openStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    private static CurrentLine download(FonbetStub stub) throws IOException {
+        try (InputStream in = new URL(stub.url()).openStream()) {
+            return CurrentLineReader.read(in, sport -> true);
+        }
+    }
+}
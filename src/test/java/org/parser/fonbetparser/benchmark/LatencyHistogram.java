@@ -0,0 +1,78 @@
+package org.parser.fonbetparser.benchmark;
+
+/**
+ * Counts of values in log-linear buckets: every power of two is split into SUB_BUCKETS buckets,
+ * so a percentile is within 1/SUB_BUCKETS of the exact value whatever the range. Memory is fixed,
+ * so a soak run of hours doesn't grow the heap it measures. Not thread-safe, one per client thread
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[(Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+    private long count;
+    private long max;
+
+    /**
+     * @param value non-negative value, e.g. latency in ns
+     */
+    void record(long value) {
+        counts[index(value)]++;
+        count++;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all values of other histogram
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * @param quantile from 0 to 1, e.g. 0.999
+     * @return upper bound of the bucket of the value at quantile, 0 if histogram is empty
+     */
+    long percentile(double quantile) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(lowest(i + 1) - 1, max);
+        }
+        return 0;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) Math.max(value, 0);
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the lowest value of bucket
+     */
+    static long lowest(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,83 @@
+package org.parser.fonbetparser.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.service.FonbetLiveParserServiceImpl;
+import org.parser.fonbetparser.service.LineDictionary;
+import org.parser.fonbetparser.service.ParserMetrics;
+import org.parser.fonbetparser.service.SportNameClassifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Allocation per poll and retained heap per kept snapshot of a line read and built again and again,
+ * with and without LineDictionary. Snapshots are kept like by poller, parse cache and history,
+ * so their names would be promoted to old gen. The second round is the one to read. Run it in a separate JVM:
+ * java -cp target/test-classes:... org.parser.fonbetparser.benchmark.LineDictionaryFootprint
+ */
+public final class LineDictionaryFootprint {
+
+    private static final int POLLS = 50;
+    private static final int KEPT = 20;
+
+    private LineDictionaryFootprint() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        byte[] payload = LineFixtures.scaled(20);
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+
+        for (int round = 0; round < 2; round++) {
+            measure("without dictionary", payload, properties, null);
+            measure("with dictionary   ", payload, properties, new LineDictionary(properties));
+        }
+    }
+
+    private static void measure(String name, byte[] payload, FonbetLiveProperties properties,
+                                LineDictionary dictionary) throws IOException {
+        FonbetLiveParserServiceImpl parser = new FonbetLiveParserServiceImpl(null, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()), LineType.LIVE, dictionary);
+        Object[] kept = new Object[KEPT];
+
+        long before = usedHeap();
+        long allocatedBefore = allocatedBytes();
+        for (int poll = 0; poll < POLLS; poll++) {
+            CurrentLine line = CurrentLineReader.read(new ByteArrayInputStream(payload), sport -> true,
+                    dictionary == null ? null : dictionary.getStrings());
+            Map<String, Set<SportEvent>> events = parser.deserialize(line, (Collection<String>) null);
+            kept[poll % KEPT] = new Object[]{line, events};
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        long after = usedHeap();
+
+        if (kept[KEPT - 1] == null)
+            throw new IllegalStateException();
+        System.out.printf("%s: %,d bytes allocated per poll, %,d bytes retained per kept snapshot%n",
+                name, allocated / POLLS, (after - before) / KEPT);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,366 @@
+package org.parser.fonbetparser.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.parser.fonbetparser.FonbetParserApplication;
+import org.parser.fonbetparser.LineFixtures;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load and soak test of /live-sport-events. Starts FonbetStub, the application with fonbet.live.url pointing
+ * to the stub, and clients requesting one sport in a closed loop for a warmup and a measured duration.
+ * Reports latency percentiles, throughput, GC pauses and heap high-water mark of the measured part, and
+ * compares them with a stored baseline. Clients run in the same JVM, so GC and heap include their share.
+ * Settings are system properties, arguments are passed to the application:
+ * java -Dload.payload=peak -Dload.clients=32 -Dload.duration=60 -Dload.baseline=load-baseline.properties
+ * -cp target/test-classes:... org.parser.fonbetparser.benchmark.LoadTest --fonbet.live.parallelism=4
+ * <ul>
+ * <li>load.payload: small, peak, x10, path of a recorded currentLine JSON or of a line log directory
+ * (fonbet.live.record-dir), which is replayed in order, default peak</li>
+ * <li>load.mutation-rate: share of factors changed on every download from the stub, default 0.05,
+ * not used with a line log</li>
+ * <li>load.stub-latency: delay of every stub response, ms, default 50</li>
+ * <li>load.sport-name: requested sport, default Футбол</li>
+ * <li>load.clients: concurrent clients, default 32</li>
+ * <li>load.warmup, load.duration: seconds, default 10 and 60, hours of duration make a soak test</li>
+ * <li>load.baseline: file to compare results with, written by load.save-baseline, skipped if missing</li>
+ * <li>load.tolerance: allowed relative regression against baseline, default 0.1</li>
+ * </ul>
+ * Exit code is 1 if a result is worse than baseline by more than tolerance
+ */
+public final class LoadTest {
+
+    private static final long SAMPLE_MILLIS = 50;
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p99", "p999"};
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String payload = System.getProperty("load.payload", LineFixtures.PEAK);
+        float mutationRate = Float.parseFloat(System.getProperty("load.mutation-rate", "0.05"));
+        long stubLatency = Long.parseLong(System.getProperty("load.stub-latency", "50"));
+        String sportName = System.getProperty("load.sport-name", "Футбол");
+        int clients = Integer.parseInt(System.getProperty("load.clients", "32"));
+        long warmup = Long.parseLong(System.getProperty("load.warmup", "10"));
+        long duration = Long.parseLong(System.getProperty("load.duration", "60"));
+        double tolerance = Double.parseDouble(System.getProperty("load.tolerance", "0.1"));
+
+        int exitCode = 0;
+        try (FonbetStub stub = stub(payload, mutationRate, stubLatency)) {
+            List<String> appArgs = new ArrayList<>(Arrays.asList("--fonbet.live.url=" + stub.url(),
+                    "--fonbet.live.mirror-urls=", "--server.port=0"));
+            appArgs.addAll(Arrays.asList(args));
+            ConfigurableApplicationContext context = SpringApplication.run(FonbetParserApplication.class,
+                    appArgs.toArray(new String[0]));
+            try {
+                String url = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port")
+                        + "/live-sport-events?sportName=" + URLEncoder.encode(sportName, "UTF-8");
+                System.out.printf("Load test: %s payload, %.1f%% factors mutated per download, stub latency %d ms, "
+                                + "%d clients, %d s warmup, %d s measured%n",
+                        payload, mutationRate * 100, stubLatency, clients, warmup, duration);
+
+                Properties results = run(url, clients, warmup, duration);
+                results.setProperty("stubRequests", Integer.toString(stub.getRequests()));
+                print(results);
+
+                String baseline = System.getProperty("load.baseline", "");
+                if (!baseline.isEmpty() && Files.exists(Paths.get(baseline))
+                        && !compare(results, load(Paths.get(baseline)), tolerance))
+                    exitCode = 1;
+                String saveBaseline = System.getProperty("load.save-baseline", "");
+                if (!saveBaseline.isEmpty())
+                    save(results, Paths.get(saveBaseline));
+            } finally {
+                context.close();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    private static FonbetStub stub(String payload, float mutationRate, long latencyMillis) throws IOException {
+        if (Files.isDirectory(Paths.get(payload)))
+            return FonbetStub.replay(Paths.get(payload), latencyMillis);
+        return FonbetStub.start(payload(payload), mutationRate, latencyMillis);
+    }
+
+    private static byte[] payload(String payload) throws IOException {
+        switch (payload) {
+            case LineFixtures.SMALL:
+            case LineFixtures.PEAK:
+            case LineFixtures.X10:
+                return LineFixtures.payload(payload);
+            default:
+                return Files.readAllBytes(Paths.get(payload));
+        }
+    }
+
+    /**
+     * Drive url with clients, first for warmup seconds without recording, then for duration seconds
+     * @return measured results
+     */
+    private static Properties run(String url, int clients, long warmup, long duration) throws InterruptedException {
+        Client[] workers = new Client[clients];
+        try (CloseableHttpClient httpClient = HttpClients.custom()
+                .setMaxConnTotal(clients)
+                .setMaxConnPerRoute(clients)
+                .build()) {
+            for (int i = 0; i < clients; i++) {
+                workers[i] = new Client(httpClient, url);
+                workers[i].start();
+            }
+
+            TimeUnit.SECONDS.sleep(warmup);
+            GcPauses gcPauses = GcPauses.listen();
+            HeapSampler heap = new HeapSampler();
+            heap.start();
+            for (Client worker : workers) {
+                worker.measured = true;
+            }
+            long start = System.nanoTime();
+
+            TimeUnit.SECONDS.sleep(duration);
+            for (Client worker : workers) {
+                worker.running = false;
+            }
+            for (Client worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            heap.running = false;
+            heap.join();
+            gcPauses.close();
+
+            LatencyHistogram latencies = new LatencyHistogram();
+            long errors = 0;
+            for (Client worker : workers) {
+                latencies.add(worker.latencies);
+                errors += worker.errors;
+            }
+
+            Properties results = new Properties();
+            results.setProperty("requests", Long.toString(latencies.getCount()));
+            results.setProperty("errors", Long.toString(errors));
+            results.setProperty("throughput", format(latencies.getCount() * 1e9 / elapsed));
+            for (int i = 0; i < QUANTILES.length; i++) {
+                results.setProperty(QUANTILE_NAMES[i] + "Millis", format(latencies.percentile(QUANTILES[i]) / 1e6));
+            }
+            results.setProperty("maxMillis", format(latencies.getMax() / 1e6));
+            results.setProperty("gcPauses", Long.toString(gcPauses.count.get()));
+            results.setProperty("gcPauseTotalMillis", Long.toString(gcPauses.totalMillis.get()));
+            results.setProperty("gcPauseMaxMillis", Long.toString(gcPauses.maxMillis.get()));
+            results.setProperty("heapHighWaterBytes", Long.toString(heap.highWater));
+            results.setProperty("heapAfterGcBytes", Long.toString(heap.afterGc));
+            return results;
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't close HTTP client", e);
+        }
+    }
+
+    private static void print(Properties results) {
+        System.out.printf("requests %s, errors %s, throughput %s req/s, stub downloads %s%n",
+                results.get("requests"), results.get("errors"), results.get("throughput"),
+                results.get("stubRequests"));
+        System.out.printf("latency p50 %s ms, p99 %s ms, p999 %s ms, max %s ms%n",
+                results.get("p50Millis"), results.get("p99Millis"), results.get("p999Millis"),
+                results.get("maxMillis"));
+        System.out.printf("gc pauses %s, total %s ms, max %s ms%n",
+                results.get("gcPauses"), results.get("gcPauseTotalMillis"), results.get("gcPauseMaxMillis"));
+        System.out.printf("heap high-water %,d bytes, after GC %,d bytes%n",
+                Long.parseLong(results.getProperty("heapHighWaterBytes")),
+                Long.parseLong(results.getProperty("heapAfterGcBytes")));
+    }
+
+    /**
+     * Print change of every result against baseline
+     * @return false if a result regressed by more than tolerance
+     */
+    private static boolean compare(Properties results, Properties baseline, double tolerance) {
+        boolean passed = true;
+        for (String name : new String[]{"throughput", "p50Millis", "p99Millis", "p999Millis",
+                "gcPauseTotalMillis", "gcPauseMaxMillis", "heapHighWaterBytes", "heapAfterGcBytes"}) {
+            if (baseline.getProperty(name) == null)
+                continue;
+
+            double before = Double.parseDouble(baseline.getProperty(name));
+            double after = Double.parseDouble(results.getProperty(name));
+            double change = before == 0 ? 0 : (after - before) / before;
+            boolean regressed = name.equals("throughput") ? change < -tolerance : change > tolerance;
+            passed &= !regressed;
+            System.out.printf("%-20s baseline %14s, now %14s, %+7.1f%%%s%n", name, baseline.getProperty(name),
+                    results.getProperty(name), change * 100, regressed ? "  REGRESSION" : "");
+        }
+        return passed;
+    }
+
+    private static void save(Properties results, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            results.store(out, "Baseline of " + LoadTest.class.getSimpleName());
+        }
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Client sending the next request as soon as the previous one is read. Latency of a request waiting
+     * for a slow previous one isn't counted, so percentiles are those of a service at its saturation rate
+     */
+    private static final class Client extends Thread {
+        private final CloseableHttpClient httpClient;
+        private final String url;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long errors;
+        private volatile boolean measured;
+        private volatile boolean running = true;
+
+        Client(CloseableHttpClient httpClient, String url) {
+            super("load-client");
+            setDaemon(true);
+            this.httpClient = httpClient;
+            this.url = url;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                long start = System.nanoTime();
+                boolean failed;
+                try {
+                    HttpResponse response = httpClient.execute(new HttpGet(url));
+                    EntityUtils.consume(response.getEntity());
+                    failed = response.getStatusLine().getStatusCode() >= 400;
+                } catch (IOException e) {
+                    failed = true;
+                }
+                if (measured) {
+                    latencies.record(System.nanoTime() - start);
+                    if (failed)
+                        errors++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop-the-world pauses reported by GC notifications. Beans of concurrent cycles are skipped,
+     * their duration isn't a pause
+     */
+    private static final class GcPauses implements AutoCloseable {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private final NotificationListener listener = (notification, handback) -> {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+                return;
+
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles"))
+                return;
+            long millis = info.getGcInfo().getDuration();
+            count.incrementAndGet();
+            totalMillis.addAndGet(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+        };
+
+        static GcPauses listen() {
+            GcPauses gcPauses = new GcPauses();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter) {
+                    ((NotificationEmitter) gc).addNotificationListener(gcPauses.listener, null, null);
+                    gcPauses.emitters.add((NotificationEmitter) gc);
+                }
+            }
+            return gcPauses;
+        }
+
+        @Override
+        public void close() {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(listener);
+                } catch (ListenerNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Largest used heap seen every SAMPLE_MILLIS, and largest heap left after a GC, which tracks
+     * retained memory of a soak run
+     */
+    private static final class HeapSampler extends Thread {
+        private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+        private volatile boolean running = true;
+        private long highWater;
+        private long afterGc;
+
+        HeapSampler() {
+            super("load-heap-sampler");
+            setDaemon(true);
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP)
+                    pools.add(pool);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                long used = 0;
+                long collected = 0;
+                for (MemoryPoolMXBean pool : pools) {
+                    used += pool.getUsage().getUsed();
+                    MemoryUsage collectionUsage = pool.getCollectionUsage();
+                    if (collectionUsage != null)
+                        collected += collectionUsage.getUsed();
+                }
+                highWater = Math.max(highWater, used);
+                afterGc = Math.max(afterGc, collected);
+                try {
+                    Thread.sleep(SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.parser.fonbetparser.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.line.LineEvent;
+import org.parser.fonbetparser.line.LineSport;
+import org.parser.fonbetparser.service.SportNameClassifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sport type, country and league of one football event: football regex compiled per event
+ * against rules compiled once and segments cached by id. Every op is one root event of peak payload
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SportNameClassifierBenchmark {
+
+    private LineSport[] segmentOfEvent;
+    private SportNameClassifier classifier;
+    private int next;
+    private int uncachedId;
+
+    @Setup
+    public void setUp() throws IOException {
+        CurrentLine line = CurrentLineReader.read(
+                new ByteArrayInputStream(LineFixtures.payload(LineFixtures.PEAK)), sport -> true);
+        Map<Integer, LineSport> sportsById = new HashMap<>();
+        for (LineSport sport : line.getSports()) {
+            if ("segment".equals(sport.getKind()) && sport.getName().startsWith("Футбол"))
+                sportsById.put(sport.getId(), sport);
+        }
+
+        List<LineSport> segments = new ArrayList<>();
+        for (LineEvent event : line.getEvents()) {
+            LineSport segment = sportsById.get(event.getSportId());
+            if (segment != null && event.getLevel() == 1)
+                segments.add(segment);
+        }
+        segmentOfEvent = segments.toArray(new LineSport[0]);
+
+        classifier = new SportNameClassifier(new FonbetLiveProperties());
+    }
+
+    private LineSport nextSegment() {
+        LineSport segment = segmentOfEvent[next];
+        next = next + 1 == segmentOfEvent.length ? 0 : next + 1;
+        return segment;
+    }
+
+    @Benchmark
+    public Object cached() {
+        return classifier.classify(nextSegment());
+    }
+
+    /**
+     * Rule compiled once, but segment is never cached: every op comes with a new sport id
+     */
+    @Benchmark
+    public Object uncached() {
+        LineSport segment = nextSegment();
+        return classifier.classify(new LineSport(uncachedId++, segment.getParentId(), segment.getKind(), segment.getName()));
+    }
+
+    @Benchmark
+    public Object compilePerEvent() {
+        return legacyEventMainInfo(nextSegment().getName());
+    }
+
+    /**
+     * getEventMainInfo as it was before, football regex compiled for every event
+     */
+    private static List<String> legacyEventMainInfo(String mainLine) {
+        List<String> res = new ArrayList<>();
+        Pattern pattern = Pattern.compile(
+                "^(?<sportType>(Футбол. До 20 лет)?|(Футбол. Жен)?|(Футбол)?).\\s" +
+                        "(?<countryName>(Товарищеские матчи)?(FIFA 21. eSport Battle)?" +
+                        "|(FIFA 21. Лига Про. [а-яА-ЯёЁ]+)?|(FIFA 21)?|(COSAFA Cup)?|(.+?)).\\s" +
+                        "(?<league>.*)$");
+
+        Matcher matcher = pattern.matcher(mainLine);
+        if (matcher.find()) {
+            res.add(matcher.group("sportType"));
+            res.add(matcher.group("countryName"));
+            res.add(matcher.group("league"));
+        }
+        return res;
+    }
+}
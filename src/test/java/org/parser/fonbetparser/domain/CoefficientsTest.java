@@ -0,0 +1,58 @@
+package org.parser.fonbetparser.domain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoefficientsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void setByFactorId() {
+        Coefficients coefficients = new Coefficients();
+
+        assertTrue(coefficients.set(921, 1.5f));
+        assertTrue(coefficients.set(1571, 1.1f));
+        assertFalse(coefficients.set(1696, 2.0f));
+
+        assertEquals(1.5f, coefficients.get(Factor.WIN_1));
+        assertTrue(coefficients.has(Factor.WIN_1_OR_WIN_2));
+        assertFalse(coefficients.has(Factor.DRAW));
+        assertTrue(Float.isNaN(coefficients.get(Factor.DRAW)));
+    }
+
+    @Test
+    void serializeAsMarkets() throws IOException {
+        Coefficients coefficients = new Coefficients();
+        coefficients.set(921, 1.5f);
+        coefficients.set(922, 3.25f);
+        coefficients.set(925, 1.2f);
+        coefficients.set(930, 1.9f);
+
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(coefficients));
+
+        assertEquals(objectMapper.readTree("{" +
+                "\"coefficient\":{\"1\":1.5,\"X\":3.25}," +
+                "\"doubleChance\":{\"X2\":1.2}," +
+                "\"handicap\":{}," +
+                "\"totals\":{\"Тотал Б\":1.9}}"), json);
+    }
+
+    @Test
+    void deserializeFromMarkets() throws IOException {
+        Coefficients coefficients = new Coefficients();
+        coefficients.set(923, 4.1f);
+        coefficients.set(927, 1.85f);
+        coefficients.set(931, 2.05f);
+
+        Coefficients copy = objectMapper.readValue(objectMapper.writeValueAsString(coefficients), Coefficients.class);
+
+        assertEquals(coefficients, copy);
+        assertEquals(coefficients.hashCode(), copy.hashCode());
+    }
+}
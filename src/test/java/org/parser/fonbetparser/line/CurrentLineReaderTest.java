@@ -0,0 +1,82 @@
+package org.parser.fonbetparser.line;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.LineFixtures;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrentLineReaderTest {
+
+    @Test
+    void readAll() throws IOException {
+        JsonObject tree = LineFixtures.json(LineFixtures.CURRENT_LINE);
+
+        CurrentLine currentLine = read(LineFixtures.bytes(LineFixtures.CURRENT_LINE), sport -> true);
+
+        assertEquals(tree.get("packetVersion").getAsLong(), currentLine.getPacketVersion());
+        assertEquals(tree.getAsJsonArray("sports").size(), currentLine.getSports().size());
+        assertEquals(tree.getAsJsonArray("events").size(), currentLine.getEvents().size());
+        assertEquals(tree.getAsJsonArray("customFactors").size(), currentLine.getFactors().size());
+
+        JsonObject firstEvent = tree.getAsJsonArray("events").get(0).getAsJsonObject();
+        LineEvent event = currentLine.getEvents().get(0);
+        assertEquals(firstEvent.get("id").getAsInt(), event.getId());
+        assertEquals(firstEvent.get("sportId").getAsInt(), event.getSportId());
+        assertEquals(firstEvent.get("level").getAsInt(), event.getLevel());
+        assertEquals(firstEvent.get("team1").getAsString(), event.getTeam1());
+        assertEquals(firstEvent.get("team2").getAsString(), event.getTeam2());
+
+        JsonObject firstFactor = tree.getAsJsonArray("customFactors").get(0).getAsJsonObject();
+        LineFactor factor = currentLine.getFactors().get(0);
+        assertEquals(firstFactor.get("e").getAsInt(), factor.getEventId());
+        assertEquals(firstFactor.get("f").getAsInt(), factor.getFactorId());
+        assertEquals(firstFactor.get("v").getAsFloat(), factor.getValue());
+    }
+
+    @Test
+    void skipSportsByFilter() throws IOException {
+        CurrentLine currentLine = read(LineFixtures.bytes(LineFixtures.CURRENT_LINE),
+                sport -> sport.getName().startsWith("Хоккей"));
+
+        Set<Integer> sportIds = currentLine.getSports().stream()
+                .map(LineSport::getId)
+                .collect(Collectors.toSet());
+        Set<Integer> eventIds = currentLine.getEvents().stream()
+                .map(LineEvent::getId)
+                .collect(Collectors.toSet());
+
+        assertEquals(2, sportIds.size());
+        assertFalse(currentLine.getEvents().isEmpty());
+        currentLine.getEvents().forEach(event -> assertTrue(sportIds.contains(event.getSportId())));
+        currentLine.getFactors().forEach(factor -> assertTrue(eventIds.contains(factor.getEventId())));
+    }
+
+    @Test
+    void readWithNullsAndUnknownFields() throws IOException {
+        String json = "{\"packetVersion\":7,\"unknown\":{\"a\":[1,2]}," +
+                "\"sports\":[{\"id\":1,\"kind\":\"sport\",\"name\":null,\"extra\":[]}]," +
+                "\"events\":[{\"id\":10,\"sportId\":1,\"name\":\"\",\"team1\":null}]," +
+                "\"customFactors\":[{\"e\":10,\"f\":921,\"v\":1.85,\"pt\":\"+1.5\"}]}";
+
+        CurrentLine currentLine = read(json.getBytes(StandardCharsets.UTF_8), sport -> true);
+
+        assertEquals(7, currentLine.getPacketVersion());
+        assertNull(currentLine.getSports().get(0).getName());
+        assertEquals(1, currentLine.getEvents().get(0).getLevel());
+        assertNull(currentLine.getEvents().get(0).getTeam1());
+        assertEquals(1.85f, currentLine.getFactors().get(0).getValue());
+    }
+
+    private static CurrentLine read(byte[] json, Predicate<LineSport> sportFilter)
+            throws IOException {
+        return CurrentLineReader.read(new ByteArrayInputStream(json), sportFilter);
+    }
+}
@@ -0,0 +1,37 @@
+package org.parser.fonbetparser.line;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InternerTest {
+
+    @Test
+    void equalValuesMapToFirstInstance() {
+        Interner<String> interner = new Interner<>(1);
+        String first = new String("Спартак");
+        String second = new String("Спартак");
+
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+        assertNull(interner.intern(null));
+        assertEquals(1, interner.size());
+    }
+
+    @Test
+    void unusedValuesExpire() {
+        Interner<String> interner = new Interner<>(2);
+        String used = interner.intern(new String("ЦСКА"));
+        interner.intern("Зенит");
+
+        for (int i = 0; i < 3; i++) {
+            interner.advance();
+            interner.intern(new String("ЦСКА"));
+        }
+
+        assertEquals(1, interner.size());
+        assertSame(used, interner.intern(new String("ЦСКА")));
+        String zenit = new String("Зенит");
+        assertSame(zenit, interner.intern(zenit));
+    }
+}
@@ -0,0 +1,106 @@
+package org.parser.fonbetparser.line;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.LineFixtures;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineDiffTest {
+
+    private static final int ROOT_ID = 25600101;
+    private static final int FIRST_HALF_ID = 25600102;
+    private static final int CORNERS_ID = 25600103;
+    private static final int SECOND_HALF_ID = 25600104;
+    /** Ливерпуль - Эвертон, same segment as ROOT_ID */
+    private static final int OTHER_ROOT_ID = 25600105;
+    /** Segment of other sport */
+    private static final int OTHER_SEGMENT_ROOT_ID = 25600109;
+    /** Футбол. Англия. Премьер-лига */
+    private static final int SEGMENT_ID = 11918;
+
+    private CurrentLine line;
+
+    @BeforeEach
+    void setUp() {
+        line = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+    }
+
+    @Test
+    void sameLine() {
+        LineDelta delta = LineDiff.between(line, LineFixtures.currentLine(LineFixtures.CURRENT_LINE), 1, 2);
+
+        assertTrue(delta.isEmpty());
+        assertTrue(delta.getChangedEventIds().isEmpty());
+    }
+
+    @Test
+    void changedFactorOfNestedChild() {
+        LineDelta delta = LineDiff.between(line, LineFixtures.withFactor(line, CORNERS_ID, 921, 7.77f), 1, 2);
+
+        assertEquals(1, delta.getFromVersion());
+        assertEquals(2, delta.getToVersion());
+        assertEquals(Collections.singleton(ROOT_ID), delta.getChangedRootIds());
+        assertEquals(new HashSet<>(Arrays.asList(ROOT_ID, FIRST_HALF_ID, CORNERS_ID, SECOND_HALF_ID)),
+                delta.getChangedEventIds());
+        assertTrue(delta.getRemovedRootIds().isEmpty());
+    }
+
+    @Test
+    void removedChild() {
+        LineDelta delta = LineDiff.between(line, LineFixtures.withoutEvent(line, SECOND_HALF_ID), 1, 2);
+
+        assertEquals(Collections.singleton(ROOT_ID), delta.getChangedRootIds());
+        assertFalse(delta.getChangedEventIds().contains(SECOND_HALF_ID));
+        assertTrue(delta.getRemovedRootIds().isEmpty());
+    }
+
+    @Test
+    void removedAndAddedRoot() {
+        CurrentLine next = LineFixtures.withoutEvent(line, ROOT_ID);
+
+        LineDelta removed = LineDiff.between(line, next, 1, 2);
+        LineDelta added = LineDiff.between(next, line, 2, 3);
+
+        assertEquals(Collections.singleton(ROOT_ID), removed.getRemovedRootIds());
+        assertFalse(removed.getChangedRootIds().contains(ROOT_ID));
+        assertTrue(added.getChangedRootIds().contains(ROOT_ID));
+        assertTrue(added.getRemovedRootIds().isEmpty());
+    }
+
+    @Test
+    void movedChildChangesOldAndNewRoot() {
+        List<LineEvent> events = line.getEvents().stream()
+                .map(event -> event.getId() != SECOND_HALF_ID ? event : new LineEvent(event.getId(), OTHER_ROOT_ID,
+                        event.getLevel(), event.getSportId(), event.getName(), event.getTeam1(), event.getTeam2()))
+                .collect(Collectors.toList());
+        CurrentLine next = new CurrentLine(line.getPacketVersion() + 1, line.getSports(), events, line.getFactors());
+
+        LineDelta delta = LineDiff.between(line, next, 1, 2);
+
+        assertEquals(new HashSet<>(Arrays.asList(ROOT_ID, OTHER_ROOT_ID)), delta.getChangedRootIds());
+        assertTrue(delta.getRemovedRootIds().isEmpty());
+    }
+
+    @Test
+    void renamedSegmentChangesAllItsRoots() {
+        List<LineSport> sports = line.getSports().stream()
+                .map(sport -> sport.getId() != SEGMENT_ID ? sport : new LineSport(sport.getId(), sport.getParentId(),
+                        sport.getKind(), "Футбол. Англия. Чемпионшип"))
+                .collect(Collectors.toList());
+        CurrentLine next = new CurrentLine(line.getPacketVersion() + 1, sports, line.getEvents(), line.getFactors());
+
+        LineDelta delta = LineDiff.between(line, next, 1, 2);
+
+        assertTrue(delta.getChangedRootIds().containsAll(Arrays.asList(ROOT_ID, OTHER_ROOT_ID)));
+        assertFalse(delta.getChangedRootIds().contains(OTHER_SEGMENT_ROOT_ID));
+        assertTrue(delta.getChangedEventIds().contains(SECOND_HALF_ID));
+        assertTrue(LineDiff.between(next, next, 2, 3).isEmpty());
+    }
+}
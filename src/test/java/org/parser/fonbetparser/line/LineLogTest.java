@@ -0,0 +1,95 @@
+package org.parser.fonbetparser.line;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.parser.fonbetparser.LineFixtures;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineLogTest {
+
+    private static final Predicate<LineSport> ALL_SPORTS = sport -> true;
+    private static final long START = 1626782400000L;
+
+    @TempDir
+    Path dir;
+
+    private final byte[] payload = LineFixtures.bytes(LineFixtures.CURRENT_LINE);
+
+    @Test
+    void replaysRecordsInOrder() throws IOException {
+        try (LineLogWriter writer = new LineLogWriter(dir, 64 * 1024 * 1024)) {
+            for (int i = 0; i < 3; i++) {
+                writer.append(START + i * 2000L, i, payload);
+            }
+        }
+
+        LineLogReader reader = LineLogReader.open(dir);
+        LineLogReader.Cursor cursor = reader.cursor(0);
+        CurrentLine expected = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(cursor.hasNext());
+            LoggedLine logged = cursor.next(ALL_SPORTS);
+            assertEquals(expected, logged.getLine());
+            assertEquals(payload.length, logged.getSize());
+        }
+        assertFalse(cursor.hasNext());
+        assertTrue(Files.size(segments().get(0)) < payload.length * 3L / 2);
+    }
+
+    @Test
+    void rollsSegmentsAndSeeksByTime() throws IOException {
+        try (LineLogWriter writer = new LineLogWriter(dir, 100)) {
+            for (int i = 0; i < 5; i++) {
+                writer.append(START + i * 2000L, i, payload);
+            }
+        }
+
+        assertEquals(5, segments().size());
+        LineLogReader reader = LineLogReader.open(dir);
+        assertEquals(5, reader.size());
+
+        LineLogReader.Cursor cursor = reader.cursor(START + 5000);
+        assertEquals(LineFixtures.currentLine(LineFixtures.CURRENT_LINE), cursor.next(ALL_SPORTS).getLine());
+        assertTrue(cursor.hasNext());
+        cursor.next(ALL_SPORTS);
+        assertFalse(cursor.hasNext());
+        assertFalse(reader.cursor(START + 10000).hasNext());
+    }
+
+    @Test
+    void recordCutByCrashIsIgnored() throws IOException {
+        try (LineLogWriter writer = new LineLogWriter(dir, 64 * 1024 * 1024)) {
+            writer.append(START, 1, payload);
+            writer.append(START + 2000, 2, payload);
+        }
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        LineLogReader reader = LineLogReader.open(dir);
+        assertEquals(1, reader.size());
+        LineLogReader.Cursor cursor = reader.cursor(0);
+        cursor.next(ALL_SPORTS);
+        assertFalse(cursor.hasNext());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(LineLogWriter.SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.CoefficientAlert;
+import org.parser.fonbetparser.domain.Factor;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.line.LineDelta;
+import org.parser.fonbetparser.line.LineDiff;
+import org.parser.fonbetparser.line.LineFactor;
+import org.parser.fonbetparser.line.LineSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Check of one snapshot by CoefficientAlertEngine: all events of the line, as for the first snapshot,
+ * and only events of a delta with one changed coefficient, as for a usual poll.
+ * Both must stay far below fonbet.live.poll-interval
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoefficientAlertBenchmark {
+
+    @Param({LineFixtures.PEAK, LineFixtures.X10})
+    public String size;
+
+    private CurrentLine line;
+    private CurrentLine changed;
+    private LineDelta forward;
+    private LineDelta backward;
+    private CoefficientAlertEngine engine;
+    private long version;
+
+    @Setup
+    public void setUp() throws IOException {
+        line = CurrentLineReader.read(new ByteArrayInputStream(LineFixtures.payload(size)), sport -> true);
+        LineFactor factor = line.getFactors().stream()
+                .filter(lineFactor -> Factor.byId(lineFactor.getFactorId()) != null)
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        changed = LineFixtures.withFactor(line, factor.getEventId(), factor.getFactorId(), factor.getValue() * 2);
+        forward = LineDiff.between(line, changed, 0, 0);
+        backward = LineDiff.between(changed, line, 0, 0);
+        engine = new CoefficientAlertEngine(null, new ParserMetrics(new SimpleMeterRegistry()),
+                new FonbetLiveProperties());
+        engine.check(new LineSnapshot(++version, LocalDateTime.now(), LocalDateTime.now(), line, null));
+    }
+
+    @Benchmark
+    public List<CoefficientAlert> allEvents() {
+        return engine.check(new LineSnapshot(++version, LocalDateTime.now(), LocalDateTime.now(),
+                version % 2 == 0 ? changed : line, null));
+    }
+
+    @Benchmark
+    public List<CoefficientAlert> changedEvents() {
+        LineDelta delta = version % 2 == 0 ? backward : forward;
+        CurrentLine next = version % 2 == 0 ? line : changed;
+        return engine.check(new LineSnapshot(version + 1, LocalDateTime.now(), LocalDateTime.now(), next,
+                new LineDelta(version, ++version, delta.getChangedRootIds(), delta.getChangedEventIds(),
+                        delta.getRemovedRootIds())));
+    }
+}
@@ -0,0 +1,115 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.CoefficientAlert;
+import org.parser.fonbetparser.domain.Factor;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineDiff;
+import org.parser.fonbetparser.line.LineSnapshot;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoefficientAlertEngineTest {
+
+    /** HANDICAP_1 5.51, HANDICAP_2 9.32 */
+    private static final int EVENT_ID = 25600120;
+    /** WIN_1, DRAW and WIN_2 sum to 0.43 */
+    private static final int SUREBET_EVENT_ID = 25600109;
+    private static final LocalDateTime START = LocalDateTime.of(2021, 7, 20, 12, 0);
+
+    private final FonbetLiveProperties properties = new FonbetLiveProperties();
+    private final CurrentLine line = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+
+    @Test
+    void firstSnapshotChecksAllEvents() {
+        List<CoefficientAlert> alerts = newEngine().check(snapshot(1, null, line));
+
+        CoefficientAlert surebet = alerts.stream()
+                .filter(alert -> alert.getEventId() == SUREBET_EVENT_ID
+                        && alert.getFactors().equals(Arrays.asList(Factor.WIN_1, Factor.DRAW, Factor.WIN_2)))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertEquals(CoefficientAlert.Type.IMPLIED_PROBABILITY, surebet.getType());
+        assertEquals(0.4311f, surebet.getScore(), 1e-4f);
+        assertEquals(START, surebet.getTime());
+        assertTrue(alerts.stream().noneMatch(alert -> alert.getType() == CoefficientAlert.Type.MOVE));
+    }
+
+    @Test
+    void onlyChangedCoefficientsRaiseAlerts() {
+        CoefficientAlertEngine engine = newEngine();
+        engine.check(snapshot(1, null, line));
+        assertTrue(engine.check(snapshot(2, line, line)).isEmpty());
+
+        CurrentLine next = LineFixtures.withFactor(line, EVENT_ID, Factor.HANDICAP_1.getId(), 7.5f);
+        List<CoefficientAlert> alerts = engine.check(snapshot(3, line, next));
+
+        assertEquals(2, alerts.size());
+        assertTrue(alerts.stream().allMatch(alert -> alert.getEventId() == EVENT_ID));
+        CoefficientAlert move = alerts.stream()
+                .filter(alert -> alert.getType() == CoefficientAlert.Type.MOVE)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertEquals(Arrays.asList(Factor.HANDICAP_1), move.getFactors());
+        assertEquals(Arrays.asList(5.51f, 7.5f), move.getValues());
+        assertEquals((7.5f - 5.51f) / 5.51f, move.getScore(), 1e-6f);
+        assertEquals(3, move.getSnapshotVersion());
+    }
+
+    @Test
+    void skippedSnapshotsAreCoveredByComparingAllEvents() {
+        CoefficientAlertEngine engine = newEngine();
+        engine.check(snapshot(1, null, line));
+        CurrentLine skipped = LineFixtures.withFactor(line, EVENT_ID, Factor.HANDICAP_1.getId(), 7.5f);
+        CurrentLine next = LineFixtures.withFactor(skipped, EVENT_ID, Factor.TOTAL_OVER.getId(), 8.4f);
+
+        List<CoefficientAlert> alerts = engine.check(new LineSnapshot(3, START, START, next,
+                LineDiff.between(skipped, next, 2, 3)));
+
+        assertTrue(alerts.stream().anyMatch(alert -> alert.getType() == CoefficientAlert.Type.MOVE
+                && alert.getFactors().contains(Factor.HANDICAP_1)));
+    }
+
+    @Test
+    void smallMovesAndDisabledRulesDontRaiseAlerts() {
+        properties.setAlertProbabilitySum(0);
+        CoefficientAlertEngine engine = newEngine();
+        assertTrue(engine.check(snapshot(1, null, line)).isEmpty());
+
+        CurrentLine next = LineFixtures.withFactor(line, EVENT_ID, Factor.HANDICAP_1.getId(), 5.6f);
+        assertTrue(engine.check(snapshot(2, line, next)).isEmpty());
+    }
+
+    @Test
+    void recentAlertsAreBoundedAndStreamed() {
+        properties.setAlertRecentSize(3);
+        CoefficientAlertEngine engine = newEngine();
+        List<CoefficientAlert> streamed = new ArrayList<>();
+        engine.alerts().subscribe(streamed::add);
+
+        List<CoefficientAlert> alerts = engine.check(snapshot(1, null, line));
+
+        assertEquals(alerts, streamed);
+        List<CoefficientAlert> recent = engine.getRecent(10);
+        assertEquals(3, recent.size());
+        assertEquals(alerts.get(alerts.size() - 1), recent.get(0));
+        assertEquals(1, engine.getRecent(1).size());
+    }
+
+    private CoefficientAlertEngine newEngine() {
+        return new CoefficientAlertEngine(null, new ParserMetrics(new SimpleMeterRegistry()), properties);
+    }
+
+    private static LineSnapshot snapshot(long version, CurrentLine previous, CurrentLine line) {
+        return new LineSnapshot(version, START, START, line,
+                previous == null ? null : LineDiff.between(previous, line, version - 1, version));
+    }
+}
@@ -0,0 +1,114 @@
+package org.parser.fonbetparser.service;
+
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.CoefficientChange;
+import org.parser.fonbetparser.domain.CoefficientMove;
+import org.parser.fonbetparser.domain.Factor;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineFactor;
+import org.parser.fonbetparser.line.LineSnapshot;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoefficientHistoryTest {
+
+    private static final int EVENT_ID = 25600120;
+    private static final LocalDateTime START = LocalDateTime.of(2021, 7, 20, 12, 0);
+
+    private final FonbetLiveProperties properties = new FonbetLiveProperties();
+    private final CurrentLine line = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+
+    @Test
+    void onlyChangedValuesAreStored() {
+        CoefficientHistory history = new CoefficientHistory(null, properties);
+        history.record(snapshot(1, line, START));
+        long collected = collectedFactors(line);
+        assertEquals(collected, history.size());
+
+        history.record(snapshot(2, line, START.plusSeconds(2)));
+        assertEquals(collected, history.size());
+
+        history.record(snapshot(3, LineFixtures.withFactor(line, EVENT_ID, Factor.HANDICAP_1.getId(), 7.5f),
+                START.plusSeconds(4)));
+        assertEquals(collected + 1, history.size());
+
+        List<CoefficientChange> changes = history.getHistory(EVENT_ID);
+        CoefficientChange last = changes.get(changes.size() - 1);
+        assertEquals(Factor.HANDICAP_1, last.getFactor());
+        assertEquals(7.5f, last.getValue());
+        assertEquals(Float.valueOf(5.51f), last.getPreviousValue());
+        assertEquals(START.plusSeconds(4), last.getTime());
+        assertNull(changes.get(0).getPreviousValue());
+        assertTrue(history.getHistory(1).isEmpty());
+    }
+
+    @Test
+    void biggestMoversOfWindow() {
+        CoefficientHistory history = new CoefficientHistory(null, properties);
+        CurrentLine next = LineFixtures.withFactor(line, EVENT_ID, Factor.HANDICAP_1.getId(), 7.5f);
+        history.record(snapshot(1, line, START));
+        history.record(snapshot(2, next, START.plusMinutes(5)));
+        history.record(snapshot(3, LineFixtures.withFactor(next, EVENT_ID, Factor.HANDICAP_1.getId(), 8f),
+                START.plusMinutes(6)));
+
+        List<CoefficientMove> moves = history.getBiggestMovers(Duration.ofSeconds(30), 10);
+
+        assertEquals(1, moves.size());
+        assertEquals(Integer.valueOf(EVENT_ID), moves.get(0).getEventId());
+        assertEquals(7.5f, moves.get(0).getFrom());
+        assertEquals(8f, moves.get(0).getTo());
+
+        moves = history.getBiggestMovers(Duration.ofMinutes(10), 10);
+        assertEquals(5.51f, moves.get(0).getFrom());
+        assertEquals(1, history.getBiggestMovers(Duration.ofMinutes(10), 1).size());
+    }
+
+    @Test
+    void oldChangesAreDroppedAfterRetention() {
+        properties.setHistoryRetention(Duration.ofMinutes(1));
+        CoefficientHistory history = new CoefficientHistory(null, properties);
+        history.record(snapshot(1, line, START));
+        history.record(snapshot(2, LineFixtures.withFactor(line, EVENT_ID, Factor.HANDICAP_1.getId(), 7.5f),
+                START.plusMinutes(2)));
+
+        assertEquals(1, history.size());
+        assertEquals(1, history.getHistory(EVENT_ID).size());
+    }
+
+    @Test
+    void memoryIsBounded() {
+        properties.setHistorySize(DataSize.ofBytes(CoefficientHistory.ENTRY_BYTES * 100L));
+        CoefficientHistory history = new CoefficientHistory(null, properties);
+        CurrentLine current = line;
+        for (int i = 0; i < 500; i++) {
+            current = LineFixtures.withFactor(current, EVENT_ID, Factor.HANDICAP_1.getId(), 1.5f + i % 10);
+            history.record(snapshot(i + 1, current, START.plusSeconds(i * 2L)));
+        }
+
+        assertEquals(100, history.size());
+        assertEquals(CoefficientHistory.ENTRY_BYTES * 100L, history.getAllocatedBytes());
+        assertEquals(100, history.getHistory(EVENT_ID).size());
+    }
+
+    private static LineSnapshot snapshot(long version, CurrentLine line, LocalDateTime time) {
+        return new LineSnapshot(version, time, time, line, null);
+    }
+
+    private static long collectedFactors(CurrentLine line) {
+        Set<Long> keys = new HashSet<>();
+        for (LineFactor factor : line.getFactors()) {
+            if (Factor.byId(factor.getFactorId()) != null)
+                keys.add(((long) factor.getEventId() << 32) | factor.getFactorId());
+        }
+        return keys.size();
+    }
+}
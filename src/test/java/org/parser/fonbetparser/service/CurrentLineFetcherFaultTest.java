@@ -0,0 +1,251 @@
+package org.parser.fonbetparser.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.config.HttpClientConfig;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineSport;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Retries, circuit breaker and hedging of CurrentLineFetcher against local stubs of fonbet host and its mirror,
+ * which fail or answer slowly on demand
+ */
+class CurrentLineFetcherFaultTest {
+
+    private static final Predicate<LineSport> ALL_SPORTS = sport -> true;
+
+    private final FonbetLiveProperties properties = new FonbetLiveProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FaultyHost primary = new FaultyHost();
+    private final FaultyHost mirror = new FaultyHost();
+    private CloseableHttpClient httpClient;
+    private CurrentLineFetcher fetcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        primary.start();
+        mirror.start();
+        properties.setUrl(primary.url());
+        properties.setRetryBackoff(Duration.ofMillis(10));
+        properties.setHedgeDelay(Duration.ofMillis(100));
+        httpClient = new HttpClientConfig().fonbetHttpClient(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (fetcher != null)
+            fetcher.close();
+        httpClient.close();
+        primary.stop();
+        mirror.stop();
+    }
+
+    @Test
+    void retriesServerErrors() throws IOException {
+        primary.failures.set(2);
+
+        CurrentLine line = newFetcher().fetch(ALL_SPORTS);
+
+        assertEquals(LineFixtures.currentLine(LineFixtures.CURRENT_LINE), line);
+        assertEquals(3, primary.requests.get());
+        assertEquals(2.0, registry.find(ParserMetrics.RETRIES_COUNTER).counter().count());
+    }
+
+    @Test
+    void clientErrorIsNotRetried() {
+        primary.status = 404;
+
+        assertThrows(HttpClientErrorException.class, () -> newFetcher().fetch(ALL_SPORTS));
+        assertEquals(1, primary.requests.get());
+        assertEquals(1.0, registry.find(ParserMetrics.ERRORS_COUNTER).counter().count());
+    }
+
+    @Test
+    void openCircuitFailsWithoutRequest() throws IOException {
+        properties.setRetries(0);
+        properties.setCircuitFailureThreshold(2);
+        properties.setCircuitOpenTime(Duration.ofMillis(200));
+        primary.failures.set(2);
+        newFetcher();
+
+        assertThrows(HttpServerErrorException.class, () -> fetcher.fetch(ALL_SPORTS));
+        assertThrows(HttpServerErrorException.class, () -> fetcher.fetch(ALL_SPORTS));
+        assertThrows(CurrentLineFetcher.CircuitOpenException.class, () -> fetcher.fetch(ALL_SPORTS));
+        assertEquals(2, primary.requests.get());
+        assertEquals(CircuitBreaker.State.OPEN, fetcher.getCircuitState(0));
+
+        sleep(250);
+        assertNotNull(fetcher.fetch(ALL_SPORTS));
+        assertEquals(3, primary.requests.get());
+        assertEquals(CircuitBreaker.State.CLOSED, fetcher.getCircuitState(0));
+    }
+
+    @Test
+    void failedHostIsReplacedByMirror() throws IOException {
+        properties.setRetries(0);
+        properties.setMirrorUrls(Collections.singletonList(mirror.url()));
+        primary.failures.set(1);
+
+        CurrentLine line = newFetcher().fetch(ALL_SPORTS);
+
+        assertEquals(LineFixtures.currentLine(LineFixtures.CURRENT_LINE), line);
+        assertEquals(1, primary.requests.get());
+        assertEquals(1, mirror.requests.get());
+    }
+
+    @Test
+    void slowHostIsHedgedByMirror() throws IOException {
+        properties.setMirrorUrls(Collections.singletonList(mirror.url()));
+        primary.delayMillis = 2000;
+
+        long start = System.nanoTime();
+        CurrentLine line = newFetcher().fetch(ALL_SPORTS);
+
+        assertEquals(LineFixtures.currentLine(LineFixtures.CURRENT_LINE), line);
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(1, mirror.requests.get());
+        assertEquals(1.0, registry.find(ParserMetrics.HEDGED_COUNTER).counter().count());
+    }
+
+    @Test
+    void slowerHostDoesNotReplaceValidatorsOfWinner() throws IOException {
+        properties.setMirrorUrls(Collections.singletonList(mirror.url()));
+        primary.delayMillis = 300;
+        primary.eTag = "\"primary\"";
+        mirror.eTag = "\"mirror\"";
+        newFetcher();
+
+        fetcher.fetch(ALL_SPORTS);
+        sleep(500);
+        primary.delayMillis = 0;
+        fetcher.fetch(ALL_SPORTS);
+
+        assertEquals("\"mirror\"", primary.ifNoneMatch);
+    }
+
+    @Test
+    void cancelledTrialOfMirrorDoesNotSkipItForever() throws IOException {
+        properties.setRetries(0);
+        properties.setCircuitFailureThreshold(1);
+        properties.setCircuitOpenTime(Duration.ofMillis(200));
+        properties.setMirrorUrls(Collections.singletonList(mirror.url()));
+        primary.failures.set(1);
+        mirror.failures.set(1);
+        newFetcher();
+        assertThrows(HttpServerErrorException.class, () -> fetcher.fetch(ALL_SPORTS));
+        assertEquals(CircuitBreaker.State.OPEN, fetcher.getCircuitState(1));
+
+        // trials of both hosts, the primary wins and the mirror is cancelled while it waits for an answer
+        sleep(250);
+        primary.delayMillis = 150;
+        mirror.delayMillis = 2000;
+        assertNotNull(fetcher.fetch(ALL_SPORTS));
+        assertEquals(2, mirror.requests.get());
+
+        sleep(250);
+        primary.status = 500;
+        mirror.delayMillis = 0;
+        assertEquals(LineFixtures.currentLine(LineFixtures.CURRENT_LINE), fetcher.fetch(ALL_SPORTS));
+        assertEquals(3, mirror.requests.get());
+        assertEquals(CircuitBreaker.State.CLOSED, fetcher.getCircuitState(1));
+    }
+
+    @Test
+    void skippedHostIsNotAskedWhileMirrorAnswers() throws IOException {
+        properties.setRetries(0);
+        properties.setCircuitFailureThreshold(1);
+        properties.setMirrorUrls(Collections.singletonList(mirror.url()));
+        primary.failures.set(1);
+        newFetcher();
+
+        fetcher.fetch(ALL_SPORTS);
+        fetcher.fetch(ALL_SPORTS);
+
+        assertEquals(1, primary.requests.get());
+        assertEquals(2, mirror.requests.get());
+    }
+
+    private CurrentLineFetcher newFetcher() {
+        fetcher = new CurrentLineFetcher(new HttpClientConfig().fonbetRestTemplate(httpClient), properties,
+                new ParserMetrics(registry), new LineLogRecorder(properties), null);
+        return fetcher;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stub of fonbet host: answers the fixture, the next failures requests with 500,
+     * every request with status if it is set, after delayMillis. Answers carry eTag if it is set
+     */
+    private static class FaultyHost {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile int status;
+        private volatile long delayMillis;
+        private volatile String eTag;
+        /** If-None-Match of the last request */
+        private volatile String ifNoneMatch;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private HttpServer server;
+
+        void start() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/live/currentLine/ru", this::handle);
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/live/currentLine/ru";
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            exchange.getRequestBody().close();
+            sleep(delayMillis);
+
+            int code = status != 0 ? status : failures.getAndDecrement() > 0 ? 500 : 200;
+            byte[] body = code == 200 ? LineFixtures.bytes(LineFixtures.CURRENT_LINE) : new byte[0];
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (eTag != null)
+                exchange.getResponseHeaders().set("ETag", eTag);
+            exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.parser.fonbetparser.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.config.HttpClientConfig;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineLogReader;
+import org.parser.fonbetparser.line.LineSport;
+import org.parser.fonbetparser.line.LoggedLine;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CurrentLineFetcher against a local stub of fonbet, which counts connections and answers 304 on matching ETag
+ */
+class CurrentLineFetcherTest {
+
+    private static final Predicate<LineSport> ALL_SPORTS = sport -> true;
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private CurrentLineFetcher fetcher;
+    private final FonbetLiveProperties properties = new FonbetLiveProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path recordDir;
+
+    private volatile String eTag = "\"v1\"";
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger gzipped = new AtomicInteger();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/live/currentLine/ru", this::handle);
+        server.start();
+
+        properties.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/live/currentLine/ru");
+        HttpClientConfig config = new HttpClientConfig();
+        httpClient = config.fonbetHttpClient(properties);
+        restTemplate = config.fonbetRestTemplate(httpClient);
+        fetcher = new CurrentLineFetcher(restTemplate, properties, new ParserMetrics(registry),
+                new LineLogRecorder(properties), new LineDictionary(properties));
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void reusesConnectionBetweenFetches() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            fetcher.fetch(ALL_SPORTS);
+        }
+
+        assertEquals(5, requests.get());
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    void decodesGzipResponse() throws IOException {
+        CurrentLine line = fetcher.fetch(ALL_SPORTS);
+
+        assertEquals(1, gzipped.get());
+        assertEquals(LineFixtures.currentLine(LineFixtures.CURRENT_LINE), line);
+    }
+
+    @Test
+    void notModifiedReturnsPreviousLine() throws IOException {
+        CurrentLine first = fetcher.fetch(ALL_SPORTS);
+        CurrentLine second = fetcher.fetch(ALL_SPORTS);
+
+        assertEquals(1, notModified.get());
+        assertSame(first, second);
+        assertEquals(1.0, registry.find(ParserMetrics.NOT_MODIFIED_COUNTER).counter().count());
+    }
+
+    @Test
+    void recordsDownloadAndParseStages() throws IOException {
+        CurrentLine line = fetcher.fetch(ALL_SPORTS);
+
+        assertEquals(1, registry.find(ParserMetrics.STAGE_TIMER).tag("stage", "download").timer().count());
+        assertEquals(1, registry.find(ParserMetrics.STAGE_TIMER).tag("stage", "json_parse").timer().count());
+        assertEquals(LineFixtures.bytes(LineFixtures.CURRENT_LINE).length,
+                registry.find(ParserMetrics.PAYLOAD_GAUGE).gauge().value(), 0);
+        assertEquals(line.getEvents().size(),
+                registry.find(ParserMetrics.ITEMS_GAUGE).tag("type", "events").gauge().value(), 0);
+    }
+
+    @Test
+    void changedETagDownloadsLineAgain() throws IOException {
+        CurrentLine first = fetcher.fetch(ALL_SPORTS);
+        eTag = "\"v2\"";
+        CurrentLine second = fetcher.fetch(ALL_SPORTS);
+        CurrentLine third = fetcher.fetch(ALL_SPORTS);
+
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertSame(second, third);
+        assertEquals(1, notModified.get());
+    }
+
+    @Test
+    void namesAreSharedBetweenDownloads() throws IOException {
+        CurrentLine first = fetcher.fetch(ALL_SPORTS);
+        eTag = "\"v2\"";
+        CurrentLine second = fetcher.fetch(ALL_SPORTS);
+
+        assertNotSame(first, second);
+        for (int i = 0; i < first.getEvents().size(); i++) {
+            assertSame(first.getEvents().get(i).getName(), second.getEvents().get(i).getName());
+            assertSame(first.getEvents().get(i).getTeam1(), second.getEvents().get(i).getTeam1());
+        }
+        assertSame(first.getSports().get(0).getName(), second.getSports().get(0).getName());
+    }
+
+    @Test
+    void otherFilterIsNotRevalidated() throws IOException {
+        fetcher.fetch(ALL_SPORTS);
+        CurrentLine football = fetcher.fetch(sport -> sport.getName().startsWith("Футбол"));
+
+        assertEquals(0, notModified.get());
+        assertTrue(football.getSports().stream().allMatch(sport -> sport.getName().startsWith("Футбол")));
+    }
+
+    @Test
+    void recordsDownloadedLines() throws IOException {
+        properties.setRecordDir(recordDir.toString());
+        LineLogRecorder recorder = new LineLogRecorder(properties);
+        CurrentLineFetcher recording = new CurrentLineFetcher(restTemplate, properties, new ParserMetrics(registry),
+                recorder, null);
+
+        CurrentLine line = recording.fetch(ALL_SPORTS);
+        recording.fetch(ALL_SPORTS);
+        recorder.close();
+
+        LineLogReader reader = LineLogReader.open(recordDir);
+        assertEquals(1, reader.size());
+        LoggedLine logged = reader.cursor(0).next(ALL_SPORTS);
+        assertEquals(line, logged.getLine());
+        assertEquals(LineFixtures.bytes(LineFixtures.CURRENT_LINE).length, logged.getSize());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        connections.add(exchange.getRemoteAddress());
+        exchange.getRequestBody().close();
+
+        String currentETag = eTag;
+        if (currentETag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.getResponseHeaders().set("ETag", currentETag);
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] body = LineFixtures.bytes(LineFixtures.CURRENT_LINE);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            gzipped.incrementAndGet();
+            body = gzip(body);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("ETag", currentETag);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
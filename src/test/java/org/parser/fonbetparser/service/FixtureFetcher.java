@@ -0,0 +1,45 @@
+package org.parser.fonbetparser.service;
+
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Fetcher reading currentLine from fixture instead of fonbet
+ */
+class FixtureFetcher implements LineFetcher {
+
+    private final String fixture;
+    private final AtomicInteger fetches = new AtomicInteger();
+    private volatile CurrentLine lastLine;
+
+    FixtureFetcher() {
+        this(LineFixtures.CURRENT_LINE);
+    }
+
+    FixtureFetcher(String fixture) {
+        this.fixture = fixture;
+    }
+
+    @Override
+    public CurrentLine fetch(Predicate<LineSport> sportFilter) throws IOException {
+        fetches.incrementAndGet();
+        lastLine = CurrentLineReader.read(new ByteArrayInputStream(LineFixtures.bytes(fixture)), sportFilter);
+        return lastLine;
+    }
+
+    @Override
+    public CurrentLine getLastLine() {
+        return lastLine;
+    }
+
+    int getFetches() {
+        return fetches.get();
+    }
+}
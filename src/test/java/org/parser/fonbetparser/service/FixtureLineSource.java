@@ -0,0 +1,89 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Source of a made-up bookmaker, reading and parsing the fixture line on every poll like a download
+ */
+class FixtureLineSource implements LineSource {
+
+    private static final FonbetLiveProperties PROPERTIES = new FonbetLiveProperties();
+    private static final FonbetLiveParserServiceImpl PARSER = new FonbetLiveParserServiceImpl(null, PROPERTIES,
+            new SportNameClassifier(PROPERTIES), ForkJoinPool.commonPool(),
+            new ParserMetrics(new SimpleMeterRegistry()));
+
+    private final String bookmaker;
+    private final Duration pollInterval;
+    private final byte[] payload = LineFixtures.bytes(LineFixtures.CURRENT_LINE);
+    private final AtomicInteger polls = new AtomicInteger();
+    private volatile boolean failing;
+
+    FixtureLineSource(String bookmaker, Duration pollInterval) {
+        this.bookmaker = bookmaker;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public String getName() {
+        return bookmaker.toLowerCase() + "-live";
+    }
+
+    @Override
+    public String getBookmaker() {
+        return bookmaker;
+    }
+
+    @Override
+    public LineType getLineType() {
+        return LineType.LIVE;
+    }
+
+    @Override
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    @Override
+    public Map<String, LiveLine> poll() throws IOException {
+        polls.incrementAndGet();
+        if (failing)
+            throw new IOException("Fixture source is down");
+
+        CurrentLine line = CurrentLineReader.read(new ByteArrayInputStream(payload), sport -> true);
+        Map<String, LiveLine> liveLines = new LinkedHashMap<>();
+        Map<String, Set<SportEvent>> sports = PARSER.deserialize(line, (Collection<String>) null);
+        for (Map.Entry<String, Set<SportEvent>> sport : sports.entrySet()) {
+            liveLines.put(sport.getKey(), LiveLine.builder()
+                    .bookmaker(bookmaker)
+                    .lineType(LineType.LIVE)
+                    .sportEvents(sport.getValue())
+                    .build());
+        }
+        return liveLines;
+    }
+
+    int getPolls() {
+        return polls.get();
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+}
@@ -0,0 +1,116 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FonbetLiveParserServiceConcurrencyTest {
+
+    private static final List<String> SPORT_NAMES = Arrays.asList("Футбол", "Хоккей", "Теннис", "Баскетбол");
+    private static final int THREADS = 16;
+    private static final int REQUESTS = 2000;
+
+    private static final int ASYNC_REQUESTS = 10000;
+
+    private SlowFixtureFetcher fetcher;
+    private FonbetLiveParserServiceImpl parserService;
+
+    @BeforeEach
+    void setUp() {
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        fetcher = new SlowFixtureFetcher();
+        parserService = new FonbetLiveParserServiceImpl(new LineSnapshotPoller(fetcher),
+                properties, new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void concurrentRequestsForDifferentSports() throws Exception {
+        fetcher.release();
+        Map<String, Set<SportEvent>> expected = new HashMap<>();
+        for (String sportName : SPORT_NAMES) {
+            expected.put(sportName, parserService.getTargetSportEvents(sportName).getSportEvents());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<LiveLine>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                String sportName = SPORT_NAMES.get(i % SPORT_NAMES.size());
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return parserService.getTargetSportEvents(sportName);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < REQUESTS; i++) {
+                String sportName = SPORT_NAMES.get(i % SPORT_NAMES.size());
+                Set<SportEvent> sportEvents = results.get(i).get(30, TimeUnit.SECONDS).getSportEvents();
+
+                assertEquals(expected.get(sportName), sportEvents, sportName);
+                sportEvents.forEach(sportEvent -> assertTrue(sportEvent.getName().startsWith(sportName)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncRequestsWaitingForDownloadShareOneParse() throws Exception {
+        List<CompletableFuture<LiveLine>> results = new ArrayList<>();
+        for (int i = 0; i < ASYNC_REQUESTS; i++) {
+            results.add(parserService.getTargetSportEventsAsync(SPORT_NAMES.get(i % SPORT_NAMES.size())).toFuture());
+        }
+        int threadsWhileWaiting = Thread.activeCount();
+
+        fetcher.release();
+
+        Map<String, LiveLine> firstResults = new HashMap<>();
+        for (int i = 0; i < ASYNC_REQUESTS; i++) {
+            String sportName = SPORT_NAMES.get(i % SPORT_NAMES.size());
+            LiveLine liveLine = results.get(i).get(30, TimeUnit.SECONDS);
+
+            assertSame(firstResults.computeIfAbsent(sportName, name -> liveLine), liveLine, sportName);
+        }
+        assertEquals(1, fetcher.getFetches());
+        assertTrue(threadsWhileWaiting < ASYNC_REQUESTS / 100, "threads: " + threadsWhileWaiting);
+        assertEquals(parserService.getTargetSportEvents("Футбол").getSportEvents(),
+                firstResults.get("Футбол").getSportEvents());
+    }
+
+    /**
+     * Fetcher holding every download until it is released, as a slow fonbet
+     */
+    private static class SlowFixtureFetcher extends FixtureFetcher {
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public CurrentLine fetch(Predicate<LineSport> sportFilter) throws IOException {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return super.fetch(sportFilter);
+        }
+    }
+}
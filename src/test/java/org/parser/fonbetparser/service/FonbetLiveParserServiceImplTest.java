@@ -1,21 +1,295 @@
 package org.parser.fonbetparser.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.Child;
+import org.parser.fonbetparser.domain.Coefficients;
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class FonbetLiveParserServiceImplTest {
 
+    private JsonObject currentLine;
+    private FixtureFetcher fetcher;
+    private FonbetLiveParserServiceImpl parserService;
+
     @BeforeEach
     void setUp() {
+        currentLine = LineFixtures.json(LineFixtures.CURRENT_LINE);
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        fetcher = new FixtureFetcher();
+        parserService = new FonbetLiveParserServiceImpl(new LineSnapshotPoller(fetcher),
+                properties, new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Футбол", "Хоккей", "Теннис", "Баскетбол"})
+    void deserialize(String sportName) {
+        Set<SportEvent> expected = new LegacyFonbetLiveParser(sportName).parse(currentLine);
+
+        assertEquals(expected, flatten(parserService.getTargetSportEvents(sportName).getSportEvents()));
     }
 
     @Test
-    void deserialize() {
+    void getSportEventsTree() {
+        SportEvent sportEvent = parserService.getTargetSportEvents("Футбол").getSportEvents().stream()
+                .filter(event -> event.getEventId() == 25600101)
+                .findFirst().orElseThrow(AssertionError::new);
+
+        assertEquals(2, sportEvent.getChildren().size());
+        Child firstHalf = sportEvent.getChildren().get(0);
+        assertEquals("1-й тайм", firstHalf.getName());
+        assertEquals(25600101, firstHalf.getParentId());
+
+        assertEquals(1, firstHalf.getChildren().size());
+        Child corners = firstHalf.getChildren().get(0);
+        assertEquals(firstHalf.getId(), corners.getParentId());
+        assertFalse(corners.getCoefficients().getCoefficient().isEmpty());
+        assertTrue(corners.getChildren().isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Футбол", "Хоккей"})
+    void getSportEvents(String sportName) {
+        LiveLine liveLine = parserService.getTargetSportEvents(sportName);
+
+        assertEquals("Fonbet", liveLine.getBookmaker());
+        assertEquals(LineType.LIVE, liveLine.getLineType());
+        assertEquals(1, liveLine.getSnapshotVersion());
+        assertNotNull(liveLine.getEndTime());
+        assertFalse(liveLine.isStale());
+        assertFalse(liveLine.getSportEvents().isEmpty());
+        liveLine.getSportEvents().forEach(sportEvent -> assertNotNull(sportEvent.getCoefficients()));
     }
 
     @Test
-    void getSportEvents() {
+    void incrementalUpdate() throws IOException {
+        CurrentLine first = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+        CurrentLine second = LineFixtures.withFactor(first, 25600103, 921, 7.77f);
+        CurrentLine third = LineFixtures.withoutEvent(second, 25600105);
+        LineSnapshotPoller poller = new LineSnapshotPoller(new SequenceFetcher(first, second, third));
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        FonbetLiveParserServiceImpl incremental = new FonbetLiveParserServiceImpl(poller, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()));
+
+        poller.refresh();
+        Set<SportEvent> firstEvents = incremental.getTargetSportEvents("Футбол").getSportEvents();
+        poller.refresh();
+        Set<SportEvent> secondEvents = incremental.getTargetSportEvents("Футбол").getSportEvents();
+
+        assertEquals(parserService.deserialize(second, "Футбол"), secondEvents);
+        assertEquals(Collections.singleton(25600101), incremental.getLineChanges().getChangedRootIds());
+        assertSame(findEvent(firstEvents, 25600109), findEvent(secondEvents, 25600109));
+        assertNotSame(findEvent(firstEvents, 25600101), findEvent(secondEvents, 25600101));
+
+        poller.refresh();
+        Set<SportEvent> thirdEvents = incremental.getTargetSportEvents("Футбол").getSportEvents();
+
+        assertEquals(parserService.deserialize(third, "Футбол"), thirdEvents);
+        assertEquals(secondEvents.size() - 1, thirdEvents.size());
+    }
+
+    @Test
+    void renamedSegmentIsBuiltAgain() throws IOException {
+        CurrentLine first = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+        CurrentLine second = new CurrentLine(first.getPacketVersion() + 1, first.getSports().stream()
+                .map(sport -> sport.getId() != 11918 ? sport : new LineSport(sport.getId(), sport.getParentId(),
+                        sport.getKind(), "Футбол. Англия. Чемпионшип"))
+                .collect(Collectors.toList()), first.getEvents(), first.getFactors());
+        LineSnapshotPoller poller = new LineSnapshotPoller(new SequenceFetcher(first, second));
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        FonbetLiveParserServiceImpl incremental = new FonbetLiveParserServiceImpl(poller, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()));
+
+        poller.refresh();
+        incremental.getTargetSportEvents("Футбол");
+        poller.refresh();
+        Set<SportEvent> secondEvents = incremental.getTargetSportEvents("Футбол").getSportEvents();
+
+        assertEquals(parserService.deserialize(second, "Футбол"), secondEvents);
+        assertNotEquals(parserService.deserialize(first, "Футбол"), secondEvents);
+    }
+
+    @Test
+    void oldSnapshotIsServedAsStale() throws Exception {
+        LineSnapshotPoller poller = new LineSnapshotPoller(
+                new SequenceFetcher(LineFixtures.currentLine(LineFixtures.CURRENT_LINE)));
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        properties.setStaleAfter(Duration.ofMillis(50));
+        FonbetLiveParserServiceImpl service = new FonbetLiveParserServiceImpl(poller, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()));
+
+        poller.refresh();
+        assertFalse(service.getTargetSportEvents("Футбол").isStale());
+        Thread.sleep(100);
+        LiveLine stale = service.getTargetSportEvents("Футбол");
+
+        assertTrue(stale.isStale());
+        assertFalse(stale.getSportEvents().isEmpty());
+    }
+
+    @Test
+    void rebuiltEventsShareNamesAndTeams() throws IOException {
+        CurrentLine first = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+        LineSnapshotPoller poller = new LineSnapshotPoller(
+                new SequenceFetcher(first, LineFixtures.withFactor(first, 25600103, 921, 7.77f)));
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        properties.setIncremental(false);
+        FonbetLiveParserServiceImpl service = new FonbetLiveParserServiceImpl(poller, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()), new LineDictionary(properties));
+
+        poller.refresh();
+        SportEvent before = findEvent(service.getTargetSportEvents("Футбол").getSportEvents(), 25600101);
+        poller.refresh();
+        SportEvent after = findEvent(service.getTargetSportEvents("Футбол").getSportEvents(), 25600101);
+
+        assertNotSame(before, after);
+        assertSame(before.getSportTeam(), after.getSportTeam());
+        assertSame(before.getName(), after.getName());
+        assertEquals("{\"team1\":\"Арсенал\",\"team2\":\"Челси\"}",
+                new ObjectMapper().writeValueAsString(after.getSportTeam()));
+    }
+
+    @Test
+    void unchangedLineKeepsVersion() throws IOException {
+        CurrentLine line = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+        LineSnapshotPoller poller = new LineSnapshotPoller(new SequenceFetcher(line, line));
+
+        long version = poller.refresh().getVersion();
+
+        assertEquals(version, poller.refresh().getVersion());
+    }
+
+    @Test
+    void getSportEventsOfSeveralSports() {
+        List<String> sportNames = Arrays.asList("Футбол", "Хоккей", "Баскетбол");
+
+        Map<String, LiveLine> liveLines = parserService.getTargetSportEvents(sportNames);
+
+        assertEquals(sportNames, new ArrayList<>(liveLines.keySet()));
+        for (String sportName : sportNames) {
+            Set<SportEvent> expected = new LegacyFonbetLiveParser(sportName).parse(currentLine);
+            assertEquals(expected, flatten(liveLines.get(sportName).getSportEvents()));
+        }
+        assertTrue(liveLines.get("Баскетбол").getSportEvents().isEmpty());
+        assertEquals(1, fetcher.getFetches());
+    }
+
+    @Test
+    void getSportEventsOfAllSports() {
+        Map<String, LiveLine> liveLines = parserService.getTargetSportEvents((Collection<String>) null);
+
+        assertEquals(new HashSet<>(Arrays.asList("Футбол", "Хоккей", "Теннис")), liveLines.keySet());
+        for (Map.Entry<String, LiveLine> liveLine : liveLines.entrySet()) {
+            assertEquals(parserService.getTargetSportEvents(liveLine.getKey()).getSportEvents(),
+                    liveLine.getValue().getSportEvents());
+        }
+    }
+
+    @Test
+    void incrementalUpdateOfSeveralSports() throws IOException {
+        CurrentLine first = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+        CurrentLine second = LineFixtures.withoutEvent(LineFixtures.withFactor(first, 25600103, 921, 7.77f), 25600105);
+        LineSnapshotPoller poller = new LineSnapshotPoller(new SequenceFetcher(first, second));
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        FonbetLiveParserServiceImpl incremental = new FonbetLiveParserServiceImpl(poller, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()));
+
+        poller.refresh();
+        incremental.getTargetSportEvents("Футбол");
+        poller.refresh();
+        Map<String, LiveLine> liveLines = incremental.getTargetSportEvents(Arrays.asList("Футбол", "Хоккей"));
+
+        Map<String, Set<SportEvent>> expected = parserService.deserialize(second, Arrays.asList("Футбол", "Хоккей"));
+        assertEquals(expected.keySet(), liveLines.keySet());
+        for (String sportName : expected.keySet()) {
+            assertEquals(expected.get(sportName), liveLines.get(sportName).getSportEvents());
+        }
+    }
+
+    @Test
+    void parallelBuildMatchesSequential() throws IOException {
+        CurrentLine line = CurrentLineReader.read(
+                new ByteArrayInputStream(LineFixtures.scaled(20)), sport -> true);
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        properties.setParallelism(4);
+        properties.setParallelChunkSize(16);
+        ForkJoinPool parserPool = new ForkJoinPool(4);
+        try {
+            FonbetLiveParserServiceImpl parallel = new FonbetLiveParserServiceImpl(
+                    new LineSnapshotPoller(new SequenceFetcher(line)), properties,
+                    new SportNameClassifier(properties), parserPool, new ParserMetrics(new SimpleMeterRegistry()));
+
+            Map<String, Set<SportEvent>> expected = parserService.deserialize(line, (Collection<String>) null);
+
+            assertEquals(expected, parallel.deserialize(line, (Collection<String>) null));
+            assertEquals(expected.get("Футбол"), parallel.getTargetSportEvents("Футбол").getSportEvents());
+        } finally {
+            parserPool.shutdown();
+        }
+    }
+
+    private static SportEvent findEvent(Set<SportEvent> sportEvents, int eventId) {
+        return sportEvents.stream()
+                .filter(sportEvent -> sportEvent.getEventId() == eventId)
+                .findFirst().orElseThrow(AssertionError::new);
+    }
+
+    /**
+     * Flatten tree of events to the old layout, where every child is a SportEvent
+     * with league, country and teams of its root event
+     */
+    private static Set<SportEvent> flatten(Set<SportEvent> sportEvents) {
+        Set<SportEvent> flat = new HashSet<>();
+        for (SportEvent sportEvent : sportEvents) {
+            flat.add(copyOf(sportEvent, sportEvent.getEventId(), sportEvent.getName(), sportEvent.getCoefficients()));
+            flattenChildren(sportEvent, sportEvent.getChildren(), flat);
+        }
+        return flat;
+    }
+
+    private static void flattenChildren(SportEvent root, List<Child> children, Set<SportEvent> flat) {
+        for (Child child : children) {
+            flat.add(copyOf(root, child.getId(), child.getName(), child.getCoefficients()));
+            flattenChildren(root, child.getChildren(), flat);
+        }
+    }
+
+    private static SportEvent copyOf(SportEvent root, Integer eventId, String name, Coefficients coefficients) {
+        return SportEvent.builder()
+                .eventId(eventId)
+                .name(name)
+                .sportType(root.getSportType())
+                .countryName(root.getCountryName())
+                .league(root.getLeague())
+                .sportTeam(root.getSportTeam())
+                .coefficients(coefficients)
+                .build();
     }
-}
\ No newline at end of file
+}
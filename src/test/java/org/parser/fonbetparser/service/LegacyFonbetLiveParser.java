@@ -0,0 +1,214 @@
+package org.parser.fonbetparser.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.parser.fonbetparser.domain.*;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reference copy of the original nested-loop parser. Used as an oracle for regression tests.
+ * Unlike the original, level 3 children keep their coefficients
+ */
+class LegacyFonbetLiveParser {
+
+    private final String sportName;
+    private Set<JsonObject> sportWithCurrentName;
+    private Set<SportEvent> targetSportEvents;
+    private Set<Child> level2sports;
+    private Set<Child> level3sports;
+
+    LegacyFonbetLiveParser(String sportName) {
+        this.sportName = sportName;
+    }
+
+    Set<SportEvent> parse(JsonObject currentLine) {
+        collectSportsByName(currentLine.getAsJsonArray("sports"));
+        collectEvents(currentLine.getAsJsonArray("events"), currentLine.getAsJsonArray("customFactors"));
+        return targetSportEvents;
+    }
+
+    private void collectEvents(JsonArray events, JsonArray factors) {
+        JsonObject eventObject, sportObject;
+        Set<JsonObject> targetFactors;
+        Set<JsonObject> factorsSet = StreamSupport.stream(factors.spliterator(), true)
+                .map(JsonElement::getAsJsonObject)
+                .collect(Collectors.toSet());
+
+        int level;
+        targetSportEvents = new HashSet<>();
+        level2sports = new HashSet<>();
+        level3sports = new HashSet<>();
+
+        for (JsonElement event : events) {
+            eventObject = event.getAsJsonObject();
+            int eventSportId = eventObject.get("sportId").getAsInt();
+            int eventId = eventObject.get("id").getAsInt();
+            level = eventObject.get("level").getAsInt();
+
+            sportObject = sportWithCurrentName.stream()
+                    .filter(jsonObject -> jsonObject.get("id").getAsInt() == eventSportId)
+                    .findFirst().orElse(null);
+
+            if (sportObject != null) {
+                targetFactors = factorsSet.parallelStream()
+                        .filter(jsonObject -> jsonObject.get("e").getAsInt() == eventId)
+                        .collect(Collectors.toSet());
+
+                if (level == 2 || level == 3) {
+                    (level == 2 ? level2sports : level3sports).add(Child.builder()
+                            .id(eventId)
+                            .parentId(eventObject.get("parentId").getAsInt())
+                            .name(eventObject.get("name").getAsString())
+                            .coefficients(collectCoefficientsForEvent(targetFactors))
+                            .build()
+                    );
+                    continue;
+                }
+
+                targetSportEvents.add(buildSportEvent(sportObject, eventObject, targetFactors));
+            }
+        }
+
+        collectChildren();
+    }
+
+    private void collectChildren() {
+        Set<Child> children = new HashSet<>(level2sports);
+        for (Child level2 : level2sports) {
+            for (Child level3 : level3sports) {
+                if (level3.getParentId().equals(level2.getId())) {
+                    children.add(Child.builder()
+                            .id(level3.getId())
+                            .parentId(level2.getParentId())
+                            .name(level3.getName())
+                            .coefficients(level3.getCoefficients())
+                            .build()
+                    );
+                }
+            }
+        }
+
+        Set<SportEvent> sportEventChildren = new HashSet<>();
+        for (Child child : children) {
+            for (SportEvent event : targetSportEvents) {
+                if (child.getParentId().equals(event.getEventId())) {
+                    sportEventChildren.add(SportEvent.builder()
+                            .eventId(child.getId())
+                            .league(event.getLeague())
+                            .countryName(event.getCountryName())
+                            .sportType(event.getSportType())
+                            .coefficients(child.getCoefficients())
+                            .sportTeam(event.getSportTeam())
+                            .name(child.getName())
+                            .build()
+                    );
+                }
+            }
+        }
+
+        targetSportEvents.addAll(sportEventChildren);
+    }
+
+    private SportEvent buildSportEvent(JsonObject sportObject, JsonObject eventObject, Set<JsonObject> factors) {
+        List<String> eventMainInfo = getEventMainInfo(sportObject);
+
+        return SportEvent.builder()
+                .eventId(eventObject.get("id").getAsInt())
+                .name(sportObject.get("name").getAsString())
+                .sportTeam(SportTeam.builder()
+                        .team1(eventObject.get("team1").getAsString())
+                        .team2(eventObject.get("team2").getAsString())
+                        .build())
+                .sportType(eventMainInfo.get(0))
+                .countryName(eventMainInfo.get(1))
+                .league(eventMainInfo.get(2))
+                .coefficients(collectCoefficientsForEvent(factors))
+                .build();
+    }
+
+    private List<String> getEventMainInfo(JsonObject sportObject) {
+        List<String> res = new ArrayList<>();
+        String mainLine = sportObject.get("name").getAsString();
+
+        if (sportName.equals("Футбол")) {
+            Pattern pattern = Pattern.compile(
+                    "^(?<sportType>(Футбол. До 20 лет)?|(Футбол. Жен)?|(Футбол)?).\\s" +
+                            "(?<countryName>(Товарищеские матчи)?(FIFA 21. eSport Battle)?" +
+                            "|(FIFA 21. Лига Про. [а-яА-ЯёЁ]+)?|(FIFA 21)?|(COSAFA Cup)?|(.+?)).\\s" +
+                            "(?<league>.*)$");
+            Matcher matcher = pattern.matcher(mainLine);
+
+            if (matcher.find()) {
+                res.add(matcher.group("sportType"));
+                res.add(matcher.group("countryName"));
+                res.add(matcher.group("league"));
+            }
+        } else {
+            res.add(mainLine);
+            res.add(mainLine);
+            res.add(mainLine);
+        }
+        return res;
+    }
+
+    private Coefficients collectCoefficientsForEvent(Set<JsonObject> targetFactors) {
+        Map<String, Float> coefficient = new HashMap<>();
+        Map<String, Float> doubleChance = new HashMap<>();
+        Map<String, Float> handicap = new HashMap<>();
+        Map<String, Float> totals = new HashMap<>();
+
+        Map<Integer, String> coefficientDict = new HashMap<>();
+        coefficientDict.put(921, "1");
+        coefficientDict.put(922, "X");
+        coefficientDict.put(923, "2");
+
+        Map<Integer, String> doubleChanceDict = new HashMap<>();
+        doubleChanceDict.put(924, "1X");
+        doubleChanceDict.put(1571, "12");
+        doubleChanceDict.put(925, "X2");
+
+        Map<Integer, String> handicapDict = new HashMap<>();
+        handicapDict.put(927, "Фора 1");
+        handicapDict.put(928, "Фора 2");
+
+        Map<Integer, String> totalsDict = new HashMap<>();
+        totalsDict.put(930, "Тотал Б");
+        totalsDict.put(931, "Тотал М");
+
+        for (JsonObject factor : targetFactors) {
+            int factorNumber = factor.get("f").getAsInt();
+
+            if (coefficientDict.containsKey(factorNumber)) {
+                coefficient.put(coefficientDict.get(factorNumber), factor.get("v").getAsFloat());
+            } else if (doubleChanceDict.containsKey(factorNumber)) {
+                doubleChance.put(doubleChanceDict.get(factorNumber), factor.get("v").getAsFloat());
+            } else if (handicapDict.containsKey(factorNumber)) {
+                handicap.put(handicapDict.get(factorNumber), factor.get("v").getAsFloat());
+            } else if (totalsDict.containsKey(factorNumber)) {
+                totals.put(totalsDict.get(factorNumber), factor.get("v").getAsFloat());
+            }
+        }
+
+        return Coefficients.fromMarkets(coefficient, doubleChance, handicap, totals);
+    }
+
+    private void collectSportsByName(JsonArray sports) {
+        sportWithCurrentName = new HashSet<>();
+        Pattern pattern = Pattern.compile("(" + sportName + ").*");
+
+        for (JsonElement sport : sports) {
+            JsonObject sportObject = sport.getAsJsonObject();
+
+            if (sportObject.get("kind").getAsString().equals("segment")
+                    && pattern.matcher(sportObject.get("name").toString()).find()) {
+                sportWithCurrentName.add(sportObject);
+            }
+        }
+    }
+}
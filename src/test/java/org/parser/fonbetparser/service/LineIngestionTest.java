@@ -0,0 +1,173 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LineSourceStatus;
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineIngestionTest {
+
+    private final LineEventStore store = new LineEventStore();
+
+    @Test
+    void manySourcesPollAtOnce() throws InterruptedException {
+        List<FixtureLineSource> sources = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            sources.add(new FixtureLineSource("Bookmaker" + i, Duration.ofMillis(1)));
+        }
+        LineIngestion ingestion = new LineIngestion(new ArrayList<>(sources), store);
+
+        long start = System.nanoTime();
+        ingestion.start();
+        try {
+            long deadline = start + 20_000_000_000L;
+            while (sources.stream().anyMatch(source -> source.getPolls() < 20) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            ingestion.stop();
+        }
+
+        for (FixtureLineSource source : sources) {
+            assertTrue(source.getPolls() >= 20, source.getName() + " polled " + source.getPolls() + " times");
+        }
+        List<LineSourceStatus> statuses = store.getStatuses();
+        assertEquals(16, statuses.size());
+        for (LineSourceStatus status : statuses) {
+            assertEquals(0, status.getFailures());
+            assertTrue(status.getEvents() > 0);
+        }
+        assertEquals(16, store.getSportEvents("Футбол").size());
+    }
+
+    @Test
+    void failingSourceKeepsItsLineAndDoesNotAffectOthers() {
+        FixtureLineSource failing = new FixtureLineSource("Failing", Duration.ofSeconds(1));
+        FixtureLineSource healthy = new FixtureLineSource("Healthy", Duration.ofSeconds(1));
+        LineIngestion ingestion = new LineIngestion(Arrays.asList(failing, healthy), store);
+
+        ingestion.poll(failing);
+        failing.setFailing(true);
+        for (int i = 0; i < 3; i++) {
+            ingestion.poll(failing);
+            ingestion.poll(healthy);
+        }
+
+        LineSourceStatus failed = store.getStatuses().get(0);
+        assertEquals("failing-live", failed.getName());
+        assertEquals(4, failed.getPolls());
+        assertEquals(3, failed.getConsecutiveFailures());
+        assertNotNull(failed.getLastSuccess());
+        assertTrue(failed.getLastError().contains("Fixture source is down"));
+        assertNotNull(store.get("Failing", LineType.LIVE, "Футбол"));
+
+        LineSourceStatus ok = store.getStatuses().get(1);
+        assertEquals(0, ok.getFailures());
+        assertNull(ok.getLastError());
+        assertEquals(2, store.getSportEvents("Футбол").size());
+    }
+
+    @Test
+    void prematchSourceRefreshesItsOwnSnapshot() throws IOException {
+        CurrentLine first = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+        CurrentLine second = LineFixtures.withFactor(first, 25600103, 921, 7.77f);
+        LineSnapshotPoller poller = new LineSnapshotPoller(new SequenceFetcher(first, second));
+        FonbetLiveParserServiceImpl parserService = parserService(poller, LineType.PREMATCH);
+        FonbetLineSource source = new FonbetLineSource("fonbet-prematch", LineType.PREMATCH,
+                Duration.ofMinutes(1), parserService, poller, true, Duration.ofMinutes(3));
+
+        Map<String, LiveLine> firstLines = source.poll();
+        Map<String, LiveLine> secondLines = source.poll();
+
+        assertEquals(LineType.PREMATCH, firstLines.get("Футбол").getLineType());
+        assertEquals(1, firstLines.get("Футбол").getSnapshotVersion());
+        assertEquals(2, secondLines.get("Футбол").getSnapshotVersion());
+        assertEquals(parserService.deserialize(second, "Футбол"),
+                secondLines.get("Футбол").getSportEvents());
+    }
+
+    @Test
+    void fonbetSourceFailsWhenLineIsNotDownloaded() throws InterruptedException {
+        DownFetcher fetcher = new DownFetcher(LineFixtures.currentLine(LineFixtures.CURRENT_LINE));
+        LineSnapshotPoller poller = new LineSnapshotPoller(fetcher);
+        FonbetLiveParserServiceImpl parserService = parserService(poller, LineType.LIVE);
+        FonbetLineSource live = new FonbetLineSource("fonbet-live", LineType.LIVE, Duration.ofSeconds(1),
+                parserService, poller, false, Duration.ofMillis(100));
+        FonbetLineSource refreshed = new FonbetLineSource("fonbet-refreshed", LineType.LIVE, Duration.ofSeconds(1),
+                parserService, poller, true, Duration.ofMinutes(1));
+        LineIngestion ingestion = new LineIngestion(Arrays.asList(live, refreshed), store);
+
+        poller.poll();
+        ingestion.poll(live);
+        fetcher.setDown(true);
+        Thread.sleep(200);
+        poller.poll();
+        ingestion.poll(live);
+        ingestion.poll(refreshed);
+
+        LineSourceStatus stale = store.getStatuses().get(0);
+        assertEquals("fonbet-live", stale.getName());
+        assertEquals(1, stale.getConsecutiveFailures());
+        assertNotNull(stale.getLastSuccess());
+        assertTrue(stale.getLastError().contains("stale"), stale.getLastError());
+        assertNotNull(store.get("Fonbet", LineType.LIVE, "Футбол"));
+
+        LineSourceStatus down = store.getStatuses().get(1);
+        assertEquals("fonbet-refreshed", down.getName());
+        assertEquals(1, down.getConsecutiveFailures());
+        assertNull(down.getLastSuccess());
+        assertTrue(down.getLastError().contains("Fonbet is down"), down.getLastError());
+    }
+
+    private static FonbetLiveParserServiceImpl parserService(LineSnapshotPoller poller, LineType lineType) {
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        return new FonbetLiveParserServiceImpl(poller, properties, new SportNameClassifier(properties),
+                ForkJoinPool.commonPool(), new ParserMetrics(new SimpleMeterRegistry()), lineType,
+                new LineDictionary(properties));
+    }
+
+    /**
+     * Fetcher returning the same line until it is down
+     */
+    private static class DownFetcher implements LineFetcher {
+
+        private final CurrentLine line;
+        private volatile boolean down;
+
+        DownFetcher(CurrentLine line) {
+            this.line = line;
+        }
+
+        void setDown(boolean down) {
+            this.down = down;
+        }
+
+        @Override
+        public CurrentLine fetch(Predicate<LineSport> sportFilter) throws IOException {
+            if (down)
+                throw new IOException("Fonbet is down");
+            return line;
+        }
+
+        @Override
+        public CurrentLine getLastLine() {
+            return line;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.parser.fonbetparser.service;
+
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineSnapshot;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineSnapshotPollerTest {
+
+    @Test
+    void getSnapshotDownloadsOnce() throws IOException {
+        FixtureFetcher fetcher = new FixtureFetcher();
+        LineSnapshotPoller poller = new LineSnapshotPoller(fetcher);
+
+        LineSnapshot snapshot = poller.getSnapshot();
+
+        assertSame(snapshot, poller.getSnapshot());
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(1, fetcher.getFetches());
+        assertFalse(snapshot.getLine().getEvents().isEmpty());
+    }
+
+    @Test
+    void pollOfUnchangedLineKeepsVersion() throws IOException {
+        LineSnapshotPoller poller = new LineSnapshotPoller(new FixtureFetcher());
+
+        poller.poll();
+        LineSnapshot first = poller.getSnapshot();
+        poller.poll();
+        LineSnapshot second = poller.getSnapshot();
+
+        assertNotSame(first, second);
+        assertEquals(first.getVersion(), second.getVersion());
+        assertSame(first.getLine(), second.getLine());
+        assertFalse(second.getFetchEnd().isBefore(first.getFetchEnd()));
+    }
+
+    @Test
+    void failedPollKeepsLatestSnapshot() throws IOException {
+        FailingFetcher fetcher = new FailingFetcher();
+        LineSnapshotPoller poller = new LineSnapshotPoller(fetcher);
+        poller.poll();
+        LineSnapshot snapshot = poller.getSnapshot();
+
+        fetcher.failing = true;
+        poller.poll();
+
+        assertSame(snapshot, poller.getSnapshot());
+    }
+
+    private static class FailingFetcher extends FixtureFetcher {
+        private boolean failing;
+
+        @Override
+        public CurrentLine fetch(Predicate<LineSport> sportFilter) throws IOException {
+            if (failing)
+                throw new IOException("Connection refused");
+            return super.fetch(sportFilter);
+        }
+    }
+}
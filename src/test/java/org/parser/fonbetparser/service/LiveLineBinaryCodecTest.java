@@ -0,0 +1,59 @@
+package org.parser.fonbetparser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveLineBinaryCodecTest {
+
+    private final FonbetLiveProperties properties = new FonbetLiveProperties();
+    private final FonbetLiveParserServiceImpl parserService = new FonbetLiveParserServiceImpl(
+            new LineSnapshotPoller(new FixtureFetcher()), properties, new SportNameClassifier(properties),
+            ForkJoinPool.commonPool(), new ParserMetrics(new SimpleMeterRegistry()));
+
+    @Test
+    void decodesEncodedLine() {
+        for (String sportName : Arrays.asList("Футбол", "Хоккей", "Теннис")) {
+            LiveLine liveLine = parserService.getTargetSportEvents(sportName);
+
+            LiveLine decoded = LiveLineBinaryCodec.decode(LiveLineBinaryCodec.encode(liveLine));
+
+            assertFalse(liveLine.getSportEvents().isEmpty());
+            assertEquals(liveLine, decoded);
+            assertEquals(new HashSet<>(liveLine.getSportEvents()), decoded.getSportEvents());
+        }
+    }
+
+    @Test
+    void keepsStaleFlag() {
+        LiveLine liveLine = parserService.getTargetSportEvents("Хоккей");
+        liveLine.setStale(true);
+
+        assertTrue(LiveLineBinaryCodec.decode(LiveLineBinaryCodec.encode(liveLine)).isStale());
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        LiveLine liveLine = parserService.getTargetSportEvents("Футбол");
+
+        assertTrue(LiveLineBinaryCodec.encode(liveLine).length * 3 < objectMapper.writeValueAsBytes(liveLine).length);
+    }
+
+    @Test
+    void rejectsOtherPayload() {
+        assertThrows(IllegalArgumentException.class, () -> LiveLineBinaryCodec.decode("{}".getBytes()));
+        byte[] encoded = LiveLineBinaryCodec.encode(parserService.getTargetSportEvents("Футбол"));
+        assertThrows(IllegalArgumentException.class,
+                () -> LiveLineBinaryCodec.decode(Arrays.copyOf(encoded, encoded.length / 2)));
+    }
+}
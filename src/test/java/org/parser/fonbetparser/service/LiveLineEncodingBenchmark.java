@@ -0,0 +1,98 @@
+package org.parser.fonbetparser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding of LiveLine of one sport as JSON and as LiveLineBinaryCodec, plain and gzipped as on the wire.
+ * Sizes of all four bodies are printed once per trial
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LiveLineEncodingBenchmark {
+
+    @Param({LineFixtures.SMALL, LineFixtures.PEAK, LineFixtures.X10})
+    public String size;
+
+    @Param({"Футбол"})
+    public String sportName;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private LiveLine liveLine;
+
+    @Setup
+    public void setUp() throws IOException {
+        CurrentLine currentLine = CurrentLineReader.read(
+                new ByteArrayInputStream(LineFixtures.payload(size)), sport -> true);
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        liveLine = new FonbetLiveParserServiceImpl(new LineSnapshotPoller(new SequenceFetcher(currentLine)),
+                properties, new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()))
+                .getTargetSportEvents(sportName);
+
+        System.out.printf("%n%s, %d events: json %d bytes, gzip %d; binary %d bytes, gzip %d%n",
+                size, liveLine.getSportEvents().size(), json().length, jsonGzip().length,
+                binary().length, binaryGzip().length);
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        return objectMapper.writeValueAsBytes(liveLine);
+    }
+
+    @Benchmark
+    public byte[] binary() {
+        return LiveLineBinaryCodec.encode(liveLine);
+    }
+
+    @Benchmark
+    public byte[] jsonGzip() throws IOException {
+        return gzip(objectMapper.writeValueAsBytes(liveLine));
+    }
+
+    @Benchmark
+    public byte[] binaryGzip() throws IOException {
+        return gzip(LiveLineBinaryCodec.encode(liveLine));
+    }
+
+    @Benchmark
+    public LiveLine decodeBinary(BinaryState state) {
+        return LiveLineBinaryCodec.decode(state.body);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BinaryState {
+        byte[] body;
+
+        @Setup
+        public void setUp(LiveLineEncodingBenchmark benchmark) {
+            body = benchmark.binary();
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
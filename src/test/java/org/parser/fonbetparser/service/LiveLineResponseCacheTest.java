@@ -0,0 +1,145 @@
+package org.parser.fonbetparser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LineType;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveLineResponseCacheTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final FonbetLiveProperties properties = new FonbetLiveProperties();
+
+    @Test
+    void sameVersionIsSerializedOnce() throws Exception {
+        LiveLineResponseCache cache = newCache();
+        LiveLine liveLine = liveLine(1, 10);
+
+        LiveLineResponseCache.SerializedLiveLine first = cache.get("Футбол", liveLine);
+
+        assertSame(first, cache.get("Футбол", liveLine(1, 10)));
+        assertArrayEquals(objectMapper.writeValueAsBytes(liveLine), first.getBody());
+        assertSame(first.getBody(), first.getBody());
+    }
+
+    @Test
+    void newVersionIsSerializedAgain() {
+        LiveLineResponseCache cache = newCache();
+
+        LiveLineResponseCache.SerializedLiveLine first = cache.get("Футбол", liveLine(1, 10));
+        LiveLineResponseCache.SerializedLiveLine second = cache.get("Футбол", liveLine(2, 11));
+
+        assertNotSame(first, second);
+        assertNotEquals(first.getETag(true), second.getETag(true));
+        assertEquals(second.getBody().length + second.getGzipBody().length, cache.getTotalBytes());
+    }
+
+    @Test
+    void sameVersionKeepsTimesOfFirstDownload() throws Exception {
+        LiveLineResponseCache cache = newCache();
+        LiveLine first = liveLine(1, 10);
+        LiveLine notModified = liveLine(1, 10);
+        notModified.setStartTime(first.getStartTime().plusMinutes(1));
+        notModified.setEndTime(first.getEndTime().plusMinutes(1));
+
+        LiveLineResponseCache.SerializedLiveLine serialized = cache.get("Футбол", first);
+
+        assertSame(serialized, cache.get("Футбол", notModified));
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(first)).get("endTime"),
+                objectMapper.readTree(serialized.getBody()).get("endTime"));
+    }
+
+    @Test
+    void formatsAreCachedSeparately() {
+        LiveLineResponseCache cache = newCache();
+
+        LiveLineResponseCache.SerializedLiveLine json = cache.get("Футбол", liveLine(1, 10));
+        LiveLineResponseCache.SerializedLiveLine binary =
+                cache.get("Футбол", liveLine(1, 10), LiveLineResponseCache.Format.BINARY);
+
+        assertSame(json, cache.get("Футбол", liveLine(1, 10), LiveLineResponseCache.Format.JSON));
+        assertSame(binary, cache.get("Футбол", liveLine(1, 10), LiveLineResponseCache.Format.BINARY));
+        assertFalse(binary.matches(json.getETag(true)));
+        assertEquals(liveLine(1, 10), LiveLineBinaryCodec.decode(binary.getBody()));
+    }
+
+    @Test
+    void staleLineIsSerializedAgain() {
+        LiveLineResponseCache cache = newCache();
+        LiveLine liveLine = liveLine(1, 10);
+
+        LiveLineResponseCache.SerializedLiveLine fresh = cache.get("Футбол", liveLine);
+        liveLine.setStale(true);
+        LiveLineResponseCache.SerializedLiveLine stale = cache.get("Футбол", liveLine);
+
+        assertNotSame(fresh, stale);
+        assertNotEquals(fresh.getETag(true), stale.getETag(true));
+        assertSame(stale, cache.get("Футбол", liveLine));
+    }
+
+    @Test
+    void eTagMatching() {
+        LiveLineResponseCache.SerializedLiveLine serialized = newCache().get("Футбол", liveLine(1, 10));
+
+        assertTrue(serialized.matches(serialized.getETag(true)));
+        assertTrue(serialized.matches("\"other\", " + serialized.getETag(false)));
+        assertTrue(serialized.matches("W/" + serialized.getETag(true)));
+        assertTrue(serialized.matches("*"));
+        assertFalse(serialized.matches("\"other\""));
+        assertFalse(serialized.matches(null));
+    }
+
+    @Test
+    void leastRecentlyUsedSportIsEvicted() {
+        long size = newCache().get("Футбол", liveLine(1, 10)).getSize();
+        properties.setResponseCacheSize(DataSize.ofBytes(size * 2 + size / 2));
+        LiveLineResponseCache cache = newCache();
+
+        LiveLineResponseCache.SerializedLiveLine football = cache.get("Футбол", liveLine(1, 10));
+        LiveLineResponseCache.SerializedLiveLine hockey = cache.get("Хоккей", liveLine(1, 10));
+        cache.get("Футбол", liveLine(1, 10));
+        cache.get("Теннис", liveLine(1, 10));
+
+        assertSame(football, cache.get("Футбол", liveLine(1, 10)));
+        assertNotSame(hockey, cache.get("Хоккей", liveLine(1, 10)));
+        assertTrue(cache.getTotalBytes() <= properties.getResponseCacheSize().toBytes());
+    }
+
+    private LiveLineResponseCache newCache() {
+        return new LiveLineResponseCache(objectMapper, properties, new ParserMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static LiveLine liveLine(long version, int events) {
+        Set<SportEvent> sportEvents = new HashSet<>();
+        for (int i = 0; i < events; i++) {
+            sportEvents.add(SportEvent.builder()
+                    .eventId(25600101 + i)
+                    .name("Футбол. Англия. Премьер-лига")
+                    .sportType("Футбол")
+                    .countryName("Англия")
+                    .league("Премьер-лига")
+                    .children(Collections.emptyList())
+                    .build());
+        }
+        return LiveLine.builder()
+                .bookmaker("Fonbet")
+                .lineType(LineType.LIVE)
+                .snapshotVersion(version)
+                .startTime(LocalDateTime.of(2021, 7, 20, 12, 0))
+                .endTime(LocalDateTime.of(2021, 7, 20, 12, 0, 1))
+                .sportEvents(sportEvents)
+                .build();
+    }
+}
@@ -0,0 +1,188 @@
+package org.parser.fonbetparser.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveSportEventsPublisherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final FonbetLiveProperties properties = new FonbetLiveProperties();
+    private LineSnapshotPoller poller;
+    private LiveSportEventsPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        CurrentLine first = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+        CurrentLine second = LineFixtures.withFactor(first, 25600103, 921, 7.77f);
+        CurrentLine third = LineFixtures.withoutEvent(LineFixtures.withFactor(second, 25600113, 921, 5.55f), 25600105);
+
+        poller = new LineSnapshotPoller(new SequenceFetcher(first, second, third));
+        FonbetLiveParserServiceImpl parserService = new FonbetLiveParserServiceImpl(poller, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry()));
+        publisher = new LiveSportEventsPublisher(parserService, poller, objectMapper);
+    }
+
+    @Test
+    void snapshotThenChanges() throws Exception {
+        CountDownLatch firstChangesReceived = new CountDownLatch(2);
+        CompletableFuture<List<ServerSentEvent<String>>> football = publisher.subscribe("Футбол")
+                .doOnNext(event -> firstChangesReceived.countDown())
+                .take(3)
+                .collectList()
+                .toFuture();
+        CompletableFuture<List<ServerSentEvent<String>>> hockey = publisher.subscribe("Хоккей")
+                .take(1)
+                .collectList()
+                .toFuture();
+
+        awaitSubscribers(2);
+        poller.refresh();
+        // slow subscribers get only the latest snapshot, so the next one is published after changes were received
+        assertTrue(firstChangesReceived.await(10, TimeUnit.SECONDS));
+        poller.refresh();
+
+        List<ServerSentEvent<String>> events = football.get(10, TimeUnit.SECONDS);
+        assertEquals(LiveSportEventsPublisher.SNAPSHOT_EVENT, events.get(0).event());
+        assertEquals(5, objectMapper.readTree(events.get(0).data()).get("sportEvents").size());
+
+        JsonNode firstChanges = objectMapper.readTree(events.get(1).data());
+        assertEquals(LiveSportEventsPublisher.CHANGES_EVENT, events.get(1).event());
+        assertEquals("2", events.get(1).id());
+        assertEquals(1, firstChanges.get("sportEvents").size());
+        assertEquals(25600101, firstChanges.get("sportEvents").get(0).get("eventId").asInt());
+        assertEquals(0, firstChanges.get("removedEventIds").size());
+
+        JsonNode secondChanges = objectMapper.readTree(events.get(2).data());
+        assertEquals(1, secondChanges.get("sportEvents").size());
+        assertEquals(25600113, secondChanges.get("sportEvents").get(0).get("eventId").asInt());
+        assertEquals(25600105, secondChanges.get("removedEventIds").get(0).asInt());
+
+        assertEquals(1, hockey.get(10, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    void sharedPayloadForSubscribersOfSport() throws Exception {
+        // both stay subscribed, a finished one would disconnect shared changes before the other one subscribes
+        CountDownLatch snapshots = new CountDownLatch(2);
+        CountDownLatch changes = new CountDownLatch(2);
+        List<ServerSentEvent<String>> first = new CopyOnWriteArrayList<>();
+        List<ServerSentEvent<String>> second = new CopyOnWriteArrayList<>();
+        Disposable firstSubscription = publisher.subscribe("Футбол")
+                .subscribe(event -> receive(event, first, snapshots, changes));
+        Disposable secondSubscription = publisher.subscribe("Футбол")
+                .subscribe(event -> receive(event, second, snapshots, changes));
+
+        try {
+            assertTrue(snapshots.await(10, TimeUnit.SECONDS));
+            awaitSubscribers(1);
+            poller.refresh();
+            assertTrue(changes.await(10, TimeUnit.SECONDS));
+        } finally {
+            firstSubscription.dispose();
+            secondSubscription.dispose();
+        }
+
+        assertSame(first.get(1).data(), second.get(1).data());
+    }
+
+    @Test
+    void snapshotOlderThanSharedChangesGetsItsOwnChanges() throws Exception {
+        // a new snapshot is downloaded right after the subscriber got its own one, before shared changes start
+        AtomicBoolean refreshed = new AtomicBoolean();
+        FonbetLiveParserServiceImpl parserService = new FonbetLiveParserServiceImpl(poller, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry())) {
+            @Override
+            public LiveLine getTargetSportEvents(String sportName) {
+                LiveLine liveLine = super.getTargetSportEvents(sportName);
+                if (refreshed.compareAndSet(false, true))
+                    poller.poll();
+                return liveLine;
+            }
+        };
+        publisher = new LiveSportEventsPublisher(parserService, poller, objectMapper);
+
+        CompletableFuture<List<ServerSentEvent<String>>> football = publisher.subscribe("Футбол")
+                .take(2)
+                .collectList()
+                .toFuture();
+        awaitSubscribers(1);
+        poller.refresh();
+
+        List<ServerSentEvent<String>> events = football.get(10, TimeUnit.SECONDS);
+        assertEquals("1", events.get(0).id());
+        JsonNode changes = objectMapper.readTree(events.get(1).data());
+        assertEquals("3", events.get(1).id());
+        Set<Integer> changedEventIds = new HashSet<>();
+        changes.get("sportEvents").forEach(event -> changedEventIds.add(event.get("eventId").asInt()));
+        assertEquals(new HashSet<>(Arrays.asList(25600101, 25600113)), changedEventIds);
+        assertEquals(25600105, changes.get("removedEventIds").get(0).asInt());
+    }
+
+    @Test
+    void lineIsNotReadOnNonBlockingThreads() throws Exception {
+        Set<String> nonBlockingReads = ConcurrentHashMap.newKeySet();
+        FonbetLiveParserServiceImpl parserService = new FonbetLiveParserServiceImpl(poller, properties,
+                new SportNameClassifier(properties), ForkJoinPool.commonPool(),
+                new ParserMetrics(new SimpleMeterRegistry())) {
+            @Override
+            public LiveLine getTargetSportEvents(String sportName) {
+                if (Schedulers.isInNonBlockingThread())
+                    nonBlockingReads.add(Thread.currentThread().getName());
+                return super.getTargetSportEvents(sportName);
+            }
+        };
+        publisher = new LiveSportEventsPublisher(parserService, poller, objectMapper);
+
+        CompletableFuture<List<ServerSentEvent<String>>> football = publisher.subscribe("Футбол")
+                .take(2)
+                .collectList()
+                .toFuture();
+        awaitSubscribers(1);
+        poller.refresh();
+
+        assertEquals(2, football.get(10, TimeUnit.SECONDS).size());
+        assertEquals(Collections.emptySet(), nonBlockingReads);
+    }
+
+    private static void receive(ServerSentEvent<String> event, List<ServerSentEvent<String>> events,
+                                CountDownLatch snapshots, CountDownLatch changes) {
+        events.add(event);
+        (events.size() == 1 ? snapshots : changes).countDown();
+    }
+
+    private void awaitSubscribers(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (poller.updatesSubscriberCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
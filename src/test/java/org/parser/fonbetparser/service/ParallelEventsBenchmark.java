@@ -0,0 +1,67 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.config.ParserConfig;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse of all sports of a large line with events built on 1..N threads of parserPool.
+ * Run with -p parallelism=1,2,4,8,16 for the cores of target machine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelEventsBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({LineFixtures.X10})
+    public String size;
+
+    @Param({"2048"})
+    public int chunkSize;
+
+    private CurrentLine currentLine;
+    private ForkJoinPool parserPool;
+    private FonbetLiveParserServiceImpl parserService;
+
+    @Setup
+    public void setUp() throws IOException {
+        currentLine = CurrentLineReader.read(new ByteArrayInputStream(LineFixtures.payload(size)), sport -> true);
+
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        properties.setParallelism(parallelism);
+        properties.setParallelChunkSize(chunkSize);
+        parserPool = new ParserConfig().parserPool(properties);
+        parserService = new FonbetLiveParserServiceImpl(new LineSnapshotPoller(new SequenceFetcher(currentLine)),
+                properties, new SportNameClassifier(properties), parserPool,
+                new ParserMetrics(new SimpleMeterRegistry()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        parserPool.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, Set<SportEvent>> deserializeAllSports() {
+        return parserService.deserialize(currentLine, (Collection<String>) null);
+    }
+}
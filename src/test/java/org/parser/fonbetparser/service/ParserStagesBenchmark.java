@@ -0,0 +1,157 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.CurrentLineReader;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Stages of FonbetLiveParserServiceImpl on payloads of different size, measured separately.
+ * Lives in the service package to reach package-private stages
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserStagesBenchmark {
+
+    @Param({LineFixtures.SMALL, LineFixtures.PEAK, LineFixtures.X10})
+    public String size;
+
+    @Param({"Футбол"})
+    public String sportName;
+
+    private byte[] payload;
+    private CurrentLine currentLine;
+    private ParseContext context;
+    private Map<String, List<LineSport>> segmentsBySportName;
+    private List<String> allSportNames;
+    private SportNameClassifier classifier;
+    private FonbetLiveParserServiceImpl parserService;
+    private LineSnapshotPoller endToEndPoller;
+    private FonbetLiveParserServiceImpl endToEndService;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = LineFixtures.payload(size);
+        currentLine = CurrentLineReader.read(new ByteArrayInputStream(payload), sport -> true);
+        context = ParseContext.of(sportName);
+
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        properties.setIncremental(false);
+        classifier = new SportNameClassifier(properties);
+        parserService = new FonbetLiveParserServiceImpl(
+                new LineSnapshotPoller(new SequenceFetcher(currentLine)), properties, classifier,
+                ForkJoinPool.commonPool(), new ParserMetrics(new SimpleMeterRegistry()));
+        segmentsBySportName = parserService.collectSportsByName(context, currentLine.getSports());
+        allSportNames = new ArrayList<>(parserService.deserialize(currentLine, (Collection<String>) null).keySet());
+
+        endToEndPoller = new LineSnapshotPoller(new PayloadFetcher(payload));
+        endToEndService = new FonbetLiveParserServiceImpl(endToEndPoller, properties, classifier,
+                ForkJoinPool.commonPool(), new ParserMetrics(new SimpleMeterRegistry()));
+    }
+
+    /**
+     * collectChildren consumes children index and attaches children to roots, so it gets fresh input every call
+     */
+    @State(Scope.Thread)
+    public static class CollectedEventsState {
+        FonbetLiveParserServiceImpl.CollectedEvents collectedEvents;
+
+        @Setup(Level.Invocation)
+        public void setUp(ParserStagesBenchmark benchmark) {
+            collectedEvents = benchmark.parserService.collectEvents(benchmark.context, benchmark.segmentsBySportName,
+                    benchmark.currentLine.getEvents(), benchmark.currentLine.getFactors());
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<LineSport>> collectSportsByName() {
+        return parserService.collectSportsByName(context, currentLine.getSports());
+    }
+
+    @Benchmark
+    public FonbetLiveParserServiceImpl.CollectedEvents collectEvents() {
+        return parserService.collectEvents(context, segmentsBySportName,
+                currentLine.getEvents(), currentLine.getFactors());
+    }
+
+    @Benchmark
+    public Map<String, Set<SportEvent>> collectChildren(CollectedEventsState state) {
+        return parserService.collectChildren(state.collectedEvents);
+    }
+
+    @Benchmark
+    public void classifySegments(Blackhole blackhole) {
+        for (List<LineSport> segments : segmentsBySportName.values()) {
+            for (LineSport sport : segments) {
+                blackhole.consume(classifier.classify(sport));
+            }
+        }
+    }
+
+    /**
+     * Streaming read of payload and full parse of one sport
+     */
+    @Benchmark
+    public LiveLine getTargetSportEvents() throws IOException {
+        endToEndPoller.refresh();
+        return endToEndService.getTargetSportEvents(sportName);
+    }
+
+    /**
+     * All sports of line in one pass
+     */
+    @Benchmark
+    public Map<String, Set<SportEvent>> deserializeAllSports() {
+        return parserService.deserialize(currentLine, allSportNames);
+    }
+
+    /**
+     * All sports of line with one pass per sport, as a client calling getTargetSportEvents for each sport
+     */
+    @Benchmark
+    public void deserializeEverySport(Blackhole blackhole) {
+        for (String sportName : allSportNames) {
+            blackhole.consume(parserService.deserialize(currentLine, sportName));
+        }
+    }
+
+    /**
+     * Fetcher reading the same payload on every call
+     */
+    private static class PayloadFetcher implements LineFetcher {
+        private final byte[] payload;
+        private CurrentLine lastLine;
+
+        PayloadFetcher(byte[] payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public CurrentLine fetch(Predicate<LineSport> sportFilter) throws IOException {
+            lastLine = CurrentLineReader.read(new ByteArrayInputStream(payload), sportFilter);
+            return lastLine;
+        }
+
+        @Override
+        public CurrentLine getLastLine() {
+            return lastLine;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.parser.fonbetparser.service;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineLogReader;
+import org.parser.fonbetparser.line.LineLogWriter;
+import org.parser.fonbetparser.line.LineSnapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayLineFetcherTest {
+
+    private static final long START = 1626782400000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pollerReplaysRecordedLines() throws IOException {
+        try (LineLogWriter writer = new LineLogWriter(dir, 64 * 1024 * 1024)) {
+            writer.append(START, 1, LineFixtures.bytes(LineFixtures.CURRENT_LINE));
+            writer.append(START + 2000, 2, withPacketVersion(LineFixtures.scaled(2), 2));
+        }
+        LineSnapshotPoller poller = new LineSnapshotPoller(new ReplayLineFetcher(LineLogReader.open(dir), 0,
+                new ParserMetrics(new SimpleMeterRegistry())));
+
+        LineSnapshot first = poller.refresh();
+        LineSnapshot second = poller.refresh();
+        LineSnapshot afterEnd = poller.refresh();
+
+        assertEquals(LineFixtures.currentLine(LineFixtures.CURRENT_LINE), first.getLine());
+        assertEquals(2, second.getVersion());
+        assertEquals(2 * first.getLine().getEvents().size(), second.getLine().getEvents().size());
+        assertEquals(second.getVersion(), afterEnd.getVersion());
+        assertSame(second.getLine(), afterEnd.getLine());
+    }
+
+    @Test
+    void replayStartsFromTime() throws IOException {
+        try (LineLogWriter writer = new LineLogWriter(dir, 64 * 1024 * 1024)) {
+            writer.append(START, 1, LineFixtures.bytes(LineFixtures.CURRENT_LINE));
+            writer.append(START + 2000, 2, LineFixtures.scaled(2));
+        }
+        ReplayLineFetcher fetcher = new ReplayLineFetcher(LineLogReader.open(dir), START + 1000,
+                new ParserMetrics(new SimpleMeterRegistry()));
+
+        assertNull(fetcher.getLastLine());
+        CurrentLine line = fetcher.fetch(sport -> true);
+        assertEquals(2 * LineFixtures.currentLine(LineFixtures.CURRENT_LINE).getEvents().size(),
+                line.getEvents().size());
+        assertSame(line, fetcher.getLastLine());
+    }
+
+    private static byte[] withPacketVersion(byte[] payload, long packetVersion) {
+        JsonObject line = JsonParser.parseString(new String(payload, StandardCharsets.UTF_8)).getAsJsonObject();
+        line.addProperty("packetVersion", packetVersion);
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,33 @@
+package org.parser.fonbetparser.service;
+
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Predicate;
+
+/**
+ * Fetcher returning given lines one by one, the last line is returned forever
+ */
+class SequenceFetcher implements LineFetcher {
+
+    private final Deque<CurrentLine> lines;
+    private CurrentLine lastLine;
+
+    SequenceFetcher(CurrentLine... lines) {
+        this.lines = new ArrayDeque<>(Arrays.asList(lines));
+    }
+
+    @Override
+    public synchronized CurrentLine fetch(Predicate<LineSport> sportFilter) {
+        lastLine = lines.size() > 1 ? lines.poll() : lines.peek();
+        return lastLine;
+    }
+
+    @Override
+    public synchronized CurrentLine getLastLine() {
+        return lastLine;
+    }
+}
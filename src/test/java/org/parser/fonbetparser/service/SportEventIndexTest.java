@@ -0,0 +1,180 @@
+package org.parser.fonbetparser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.LineFixtures;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.domain.LiveLine;
+import org.parser.fonbetparser.domain.SportEvent;
+import org.parser.fonbetparser.domain.SportEventPage;
+import org.parser.fonbetparser.domain.SportEventQuery;
+import org.parser.fonbetparser.line.CurrentLine;
+import org.parser.fonbetparser.line.LineSport;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SportEventIndexTest {
+
+    /** Арсенал - Челси */
+    private static final int EVENT_ID = 25600101;
+
+    private final CurrentLine line = LineFixtures.currentLine(LineFixtures.CURRENT_LINE);
+    private LineSnapshotPoller poller;
+    private FonbetLiveParserServiceImpl parserService;
+    private SportEventIndex index;
+
+    @BeforeEach
+    void setUp() {
+        setUp(line);
+    }
+
+    private void setUp(CurrentLine line) {
+        FonbetLiveProperties properties = new FonbetLiveProperties();
+        poller = new LineSnapshotPoller(new SequenceFetcher(line, LineFixtures.withoutEvent(line, EVENT_ID)));
+        parserService = new FonbetLiveParserServiceImpl(poller, properties, new SportNameClassifier(properties),
+                ForkJoinPool.commonPool(), new ParserMetrics(new SimpleMeterRegistry()));
+        index = new SportEventIndex(parserService, poller);
+    }
+
+    @Test
+    void filtersMatchScanOfAllEvents() {
+        List<SportEvent> all = allEvents();
+        String league = all.get(all.size() / 2).getLeague();
+
+        SportEventPage page = index.query(SportEventQuery.builder()
+                .league(league.toUpperCase(Locale.ROOT))
+                .limit(SportEventIndex.MAX_LIMIT)
+                .build());
+
+        List<Integer> expected = all.stream()
+                .filter(event -> league.equals(event.getLeague()))
+                .map(SportEvent::getEventId)
+                .sorted()
+                .collect(Collectors.toList());
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, eventIds(page));
+        assertEquals(expected.size(), page.getTotal());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void teamAndEventIdFiltersAreIntersected() {
+        SportEventPage page = index.query(SportEventQuery.builder()
+                .team("Челси")
+                .eventIds(Arrays.asList(EVENT_ID, 1))
+                .build());
+        assertEquals(Collections.singletonList(EVENT_ID), eventIds(page));
+
+        assertEquals(0, index.query(SportEventQuery.builder().team("Челси").league("Unknown").build()).getTotal());
+    }
+
+    @Test
+    void fieldsAreProjected() {
+        SportEventPage page = index.query(SportEventQuery.builder()
+                .eventIds(Collections.singletonList(EVENT_ID))
+                .fields(Arrays.asList("eventId", "coefficient"))
+                .build());
+
+        Map<String, Object> event = page.getEvents().get(0);
+        assertEquals(Arrays.asList("eventId", "coefficients"), new ArrayList<>(event.keySet()));
+        assertEquals(Collections.singleton("coefficient"), ((Map<?, ?>) event.get("coefficients")).keySet());
+    }
+
+    @Test
+    void pagesFollowSortOrder() {
+        Comparator<SportEvent> byName = Comparator.comparing(SportEvent::getName,
+                Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparing(SportEvent::getEventId);
+        List<Integer> expected = allEvents().stream()
+                .sorted(byName.reversed())
+                .map(SportEvent::getEventId)
+                .collect(Collectors.toList());
+
+        List<Integer> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            SportEventPage page = index.query(SportEventQuery.builder()
+                    .fields(Collections.singletonList("eventId"))
+                    .sort("-name")
+                    .cursor(cursor)
+                    .limit(3)
+                    .build());
+            assertEquals(expected.size(), page.getTotal());
+            assertTrue(page.getEvents().size() <= 3);
+            paged.addAll(eventIds(page));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void eventOfTwoSportsIsPagedOnce() {
+        // segment "Футбол. Жен. Бразилия. Серия A1" matches both sports
+        List<LineSport> sports = new ArrayList<>(line.getSports());
+        sports.add(new LineSport(5, 0, "sport", "Футбол. Жен"));
+        CurrentLine shared = new CurrentLine(line.getPacketVersion(), sports, line.getEvents(), line.getFactors());
+        setUp(shared);
+        assertEquals(allEvents().size() - 1,
+                allEvents().stream().map(SportEvent::getEventId).distinct().count());
+
+        Set<Integer> paged = new HashSet<>();
+        String cursor = null;
+        do {
+            SportEventPage page = index.query(SportEventQuery.builder().cursor(cursor).limit(2).build());
+            for (Integer eventId : eventIds(page)) {
+                assertTrue(paged.add(eventId), "Event " + eventId + " is paged twice");
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(allEvents().size() - 1, paged.size());
+        assertEquals(paged.size(), index.query(SportEventQuery.builder().build()).getTotal());
+    }
+
+    @Test
+    void indexFollowsNewSnapshot() throws IOException {
+        SportEventQuery query = SportEventQuery.builder().eventIds(Collections.singletonList(EVENT_ID)).build();
+        SportEventPage page = index.query(query);
+        assertEquals(1, page.getTotal());
+
+        poller.refresh();
+        SportEventPage next = index.query(query);
+
+        assertEquals(0, next.getTotal());
+        assertTrue(next.getSnapshotVersion() > page.getSnapshotVersion());
+    }
+
+    @Test
+    void malformedQueryIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> index.query(SportEventQuery.builder().fields(Collections.singletonList("odds")).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.query(SportEventQuery.builder().sort("startTime").build()));
+        String cursor = index.query(SportEventQuery.builder().limit(1).build()).getNextCursor();
+        assertThrows(IllegalArgumentException.class,
+                () -> index.query(SportEventQuery.builder().sort("name").cursor(cursor).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.query(SportEventQuery.builder().cursor("%%").build()));
+    }
+
+    private List<SportEvent> allEvents() {
+        List<SportEvent> events = new ArrayList<>();
+        for (LiveLine liveLine : parserService.getTargetSportEvents((Collection<String>) null).values()) {
+            events.addAll(liveLine.getSportEvents());
+        }
+        return events;
+    }
+
+    private static List<Integer> eventIds(SportEventPage page) {
+        return page.getEvents().stream()
+                .map(event -> (Integer) event.get("eventId"))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,74 @@
+package org.parser.fonbetparser.service;
+
+import org.junit.jupiter.api.Test;
+import org.parser.fonbetparser.config.FonbetLiveProperties;
+import org.parser.fonbetparser.line.LineSport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SportNameClassifierTest {
+
+    private final FonbetLiveProperties properties = new FonbetLiveProperties();
+    private final SportNameClassifier classifier = new SportNameClassifier(properties);
+
+    @Test
+    void classifyFootballSegment() {
+        SportNameClassifier.SegmentInfo info = classifier.classify(segment(11918, "Футбол. Англия. Премьер-лига"));
+
+        assertEquals("Футбол", info.getSportType());
+        assertEquals("Англия", info.getCountryName());
+        assertEquals("Премьер-лига", info.getLeague());
+    }
+
+    @Test
+    void classifyWomenFootballSegment() {
+        SportNameClassifier.SegmentInfo info = classifier.classify(segment(13271, "Футбол. Жен. Бразилия. Серия A1"));
+
+        assertEquals("Футбол. Жен", info.getSportType());
+        assertEquals("Бразилия", info.getCountryName());
+        assertEquals("Серия A1", info.getLeague());
+    }
+
+    @Test
+    void segmentWithoutRuleKeepsWholeName() {
+        SportNameClassifier.SegmentInfo info = classifier.classify(segment(14960, "Хоккей. КХЛ"));
+
+        assertEquals("Хоккей. КХЛ", info.getSportType());
+        assertEquals("Хоккей. КХЛ", info.getCountryName());
+        assertEquals("Хоккей. КХЛ", info.getLeague());
+    }
+
+    @Test
+    void configuredRuleForOtherSport() {
+        properties.getSegmentRules().put("Хоккей", "^(?<sportType>Хоккей)\\.\\s(?<league>.*)$");
+        SportNameClassifier hockeyClassifier = new SportNameClassifier(properties);
+
+        SportNameClassifier.SegmentInfo info = hockeyClassifier.classify(segment(14960, "Хоккей. КХЛ"));
+
+        assertEquals("Хоккей", info.getSportType());
+        assertNull(info.getCountryName());
+        assertEquals("КХЛ", info.getLeague());
+    }
+
+    @Test
+    void segmentIsParsedOncePerId() {
+        SportNameClassifier.SegmentInfo first = classifier.classify(segment(11918, "Футбол. Англия. Премьер-лига"));
+        SportNameClassifier.SegmentInfo second = classifier.classify(segment(11918, "Футбол. Англия. Премьер-лига"));
+        SportNameClassifier.SegmentInfo renamed = classifier.classify(segment(11918, "Футбол. Англия. Чемпионшип"));
+
+        assertSame(first, second);
+        assertEquals("Чемпионшип", renamed.getLeague());
+    }
+
+    @Test
+    void sportNameIsMatchedLiterally() {
+        assertTrue(classifier.matches(segment(11918, "Футбол. Англия. Премьер-лига"), "Футбол"));
+        assertFalse(classifier.matches(segment(11918, "Футбол. Англия. Премьер-лига"), "Футбол|Хоккей"));
+        assertFalse(classifier.matches(segment(11918, "Футбол. Англия. Премьер-лига"), "Футбол.*("));
+        assertFalse(classifier.matches(new LineSport(1, 0, "sport", "Футбол"), "Футбол"));
+    }
+
+    private static LineSport segment(int id, String name) {
+        return new LineSport(id, 1, "segment", name);
+    }
+}